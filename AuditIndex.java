@@ -0,0 +1,320 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Scanner;
+
+import lib.*;
+import lib.exceptions.EmptyFileException;
+import lib.exceptions.InvalidCharacteristicException;
+
+/**
+ * An index over every character in the log file, used for filtered audits
+ * Each logged character is a row, and every attribute value (including the disaster, the entry status, the decision maker,
+ * whether the character was saved and the number of locations in the scenario) has a compressed bitmap of the rows it appears in.
+ * A filter is answered by intersecting bitmaps instead of re-reading the log file
+ * @author Joshia Nambi
+ */
+public class AuditIndex {
+
+    private final static String LOCATIONS_PREFIX = "locations";
+
+    private HashMap<String, CompressedBitmap> attributeRows;
+    private HashMap<Integer, CompressedBitmap> locationCountRows;
+    private HashSet<String> reportedAttributes;     //Attributes that appear in the statistics (character attributes and entry status)
+    private CompressedBitmap savedRows;
+    private CompressedBitmap allRows;
+    private int rowCount = 0;
+    private SpatialIndex locations;         //Every logged location, numbered in the order they were logged
+    private int[] locationStartRows;        //The first row of each logged location, its rows end where the next location starts
+
+    public AuditIndex() {
+        attributeRows = new HashMap<>();
+        locationCountRows = new HashMap<>();
+        reportedAttributes = new HashSet<>();
+        savedRows = new CompressedBitmap();
+        allRows = new CompressedBitmap();
+        locations = new SpatialIndex();
+        locationStartRows = new int[1024];
+    }
+
+    /**
+     * Reads the log file at the path provided and indexes every logged character
+     * @param logFilePath the path of the log file
+     * @throws FileNotFoundException thrown when file cannot be found at path
+     * @throws EmptyFileException when file does not exist at path
+     */
+    public void readLogFile(String logFilePath) throws FileNotFoundException, EmptyFileException {
+        File logFile = new File(logFilePath);
+        if (!(logFile.length() > 0)) {
+            throw new EmptyFileException();
+        }
+
+        Scanner logReader = new Scanner(CompressedLog.openLogStream(logFile), CompressedLog.LOG_CHARSET);
+        String decisionMaker = null;
+        String disaster = null;
+        String entryStatus = null;
+        boolean locationSaved = false;
+        int scenarioStartRow = 0;
+        int locationsInScenario = 0;
+        while (logReader.hasNextLine()) {
+            String[] lineArray = logReader.nextLine().split(",", 8);
+            if (lineArray[0].equals(">>RescueBot Log File<<")) {
+                continue;
+            } else if (lineArray[0].startsWith("decisionMaker:")) {
+                decisionMaker = lineArray[0].substring(14);
+            } else if (lineArray[0].startsWith("scenario:") || lineArray[0].equals("-----")) {
+                //The number of locations is only known once the previous scenario has ended
+                finishScenario(scenarioStartRow, locationsInScenario);
+                scenarioStartRow = rowCount;
+                locationsInScenario = 0;
+                disaster = lineArray[0].startsWith("scenario:") ? lineArray[0].substring(9) : null;
+            } else if (lineArray[0].startsWith("location:")) {
+                String[] locationData = lineArray[0].substring(9).split(";");
+                addLocation(Location.parseLatitude(locationData[0]), Location.parseLongitude(locationData[1]));
+                entryStatus = locationData[2];
+                locationSaved = locationData[3].equals("saved");
+                locationsInScenario++;
+            } else {
+                indexCharacter(parseCharacter(lineArray), decisionMaker, disaster, entryStatus, locationSaved);
+            }
+        }
+        finishScenario(scenarioStartRow, locationsInScenario);
+        logReader.close();
+        //The scanner ends quietly when the stream fails, e.g. on a corrupted or truncated block
+        if (logReader.ioException() != null) {
+            System.out.print("ERROR: LogFile is corrupted!");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return the number of characters in the index
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Finds the characters matching every filter
+     * A filter is an attribute value (e.g. bushfire, doctor, trespassing, user, saved), an attribute value to exclude (e.g. !pet),
+     * or a comparison on the number of locations in the scenario (e.g. locations>3, locations=2, locations<4)
+     * @param filters the filters
+     * @return the matching rows
+     * @throws IllegalArgumentException thrown when a filter cannot be understood
+     */
+    public CompressedBitmap filter(String[] filters) {
+        CompressedBitmap matchingRows = allRows;
+        for (String filter : filters) {
+            if (filter.isEmpty()) {
+                continue;
+            }
+            if (filter.startsWith(LOCATIONS_PREFIX) && filter.length() > LOCATIONS_PREFIX.length() + 1) {
+                matchingRows = matchingRows.and(getLocationCountRows(filter.charAt(LOCATIONS_PREFIX.length()), filter.substring(LOCATIONS_PREFIX.length() + 1)));
+            } else if (filter.startsWith("!")) {
+                matchingRows = matchingRows.andNot(getAttributeRows(filter.substring(1)));
+            } else {
+                matchingRows = matchingRows.and(getAttributeRows(filter));
+            }
+        }
+        return matchingRows;
+    }
+
+    /**
+     * Print the survival ratios of the characters matching the filters, in the same format as the audit
+     * @param filters the filters
+     * @throws IllegalArgumentException thrown when a filter cannot be understood
+     */
+    public void printFilteredAudit(String[] filters) {
+        printAudit("Filtered Audit: " + String.join(" ", filters).trim(), filter(filters));
+    }
+
+    /**
+     * Print the survival ratios of the characters at every logged location inside a region, in the same format as the audit
+     * @param minLatitude the southern edge, as a fixed point latitude
+     * @param minLongitude the western edge, as a fixed point longitude
+     * @param maxLatitude the northern edge, as a fixed point latitude
+     * @param maxLongitude the eastern edge, as a fixed point longitude
+     */
+    public void printRegionAudit(int minLatitude, int minLongitude, int maxLatitude, int maxLongitude) {
+        ArrayList<Integer> matchingLocations = new ArrayList<>();
+        locations.forEachInRegion(minLatitude, minLongitude, maxLatitude, maxLongitude, matchingLocations::add);
+        //Rows are added to a bitmap in increasing order
+        Collections.sort(matchingLocations);
+        CompressedBitmap matchingRows = new CompressedBitmap();
+        for (int location : matchingLocations) {
+            matchingRows.addRange(locationStartRows[location], getLocationEndRow(location));
+        }
+        printAudit("Region Audit: " + Location.formatCoordinate(minLatitude, 'N', 'S') + ", " + Location.formatCoordinate(minLongitude, 'E', 'W')
+                + " to " + Location.formatCoordinate(maxLatitude, 'N', 'S') + ", " + Location.formatCoordinate(maxLongitude, 'E', 'W'), matchingRows);
+    }
+
+    /**
+     * Print the survival ratios of the characters at the logged location nearest to a point, in the same format as the audit
+     * @param latitude the fixed point latitude of the point
+     * @param longitude the fixed point longitude of the point
+     * @return false if no logged location has known coordinates
+     */
+    public boolean printNearestLocationAudit(int latitude, int longitude) {
+        int nearest = locations.findNearest(latitude, longitude);
+        if (nearest < 0) {
+            return false;
+        }
+        CompressedBitmap matchingRows = new CompressedBitmap();
+        matchingRows.addRange(locationStartRows[nearest], getLocationEndRow(nearest));
+        printAudit("Nearest Logged Location: " + Location.formatCoordinate(locations.getLatitude(nearest), 'N', 'S') + ", "
+                + Location.formatCoordinate(locations.getLongitude(nearest), 'E', 'W'), matchingRows);
+        return true;
+    }
+
+    /**
+     * Print the survival ratios of a set of characters, in the same format as the audit
+     * @param title the title of the audit
+     * @param matchingRows the characters
+     */
+    private void printAudit(String title, CompressedBitmap matchingRows) {
+        CompressedBitmap matchingSavedRows = matchingRows.and(savedRows);
+        ArrayList<Pair> statistics = new ArrayList<>();
+        for (String attribute : reportedAttributes) {
+            CompressedBitmap rows = attributeRows.get(attribute);
+            int total = rows.andCardinality(matchingRows);
+            if (total > 0) {
+                statistics.add(new Pair(attribute, rows.andCardinality(matchingSavedRows), total));
+            }
+        }
+        Collections.sort(statistics, (new PairComparator()));
+        System.out.println("======================================");
+        System.out.println("# " + title);
+        System.out.println("======================================");
+        System.out.println("- % SAVED OF " + matchingRows.cardinality() + " MATCHING CHARACTERS");
+        for (Pair pair : statistics) {
+            if (StatisticsGenerator.isReportedAttribute(pair.getAttribute())) {
+                System.out.printf("%s: %.2f\n", pair.getAttribute(), pair.getSurvivalRatio());
+            }
+        }
+    }
+
+    /**
+     * Adds a logged character to the bitmaps of all of its attributes
+     */
+    private void indexCharacter(LivingBeing character, String decisionMaker, String disaster, String entryStatus, boolean saved) {
+        int row = rowCount++;
+        allRows.add(row);
+        if (saved) {
+            savedRows.add(row);
+        }
+        addToAttribute(decisionMaker, row, false);
+        addToAttribute(disaster, row, false);
+        addToAttribute(saved ? "saved" : "perished", row, false);
+        addToAttribute(entryStatus, row, true);
+        String[] representation = character.getArrayRepresentation();
+        for (int i = 0; i < representation.length; i++) {
+            //Skips the age of humans, it is not an attribute
+            if (!(character instanceof Human && i == 2)) {
+                addToAttribute(representation[i], row, true);
+            }
+        }
+    }
+
+    /**
+     * Adds a logged location to the spatial index, its characters are the rows that follow
+     */
+    private void addLocation(int latitude, int longitude) {
+        int location = locations.add(latitude, longitude);
+        if (location == locationStartRows.length) {
+            locationStartRows = Arrays.copyOf(locationStartRows, location * 2);
+        }
+        locationStartRows[location] = rowCount;
+    }
+
+    private int getLocationEndRow(int location) {
+        return (location + 1 < locations.size()) ? locationStartRows[location + 1] : rowCount;
+    }
+
+    private void addToAttribute(String attribute, int row, boolean reported) {
+        if (attribute == null) {
+            return;
+        }
+        attributeRows.computeIfAbsent(attribute, key -> new CompressedBitmap()).add(row);
+        if (reported) {
+            reportedAttributes.add(attribute);
+        }
+    }
+
+    /**
+     * Records the number of locations of the scenario for all of its characters
+     * @param scenarioStartRow the first row of the scenario
+     * @param locationsInScenario the number of locations in the scenario
+     */
+    private void finishScenario(int scenarioStartRow, int locationsInScenario) {
+        if (rowCount > scenarioStartRow) {
+            locationCountRows.computeIfAbsent(locationsInScenario, key -> new CompressedBitmap()).addRange(scenarioStartRow, rowCount);
+        }
+    }
+
+    private CompressedBitmap getAttributeRows(String attribute) {
+        CompressedBitmap rows = attributeRows.get(attribute.toLowerCase());
+        return rows == null ? new CompressedBitmap() : rows;
+    }
+
+    /**
+     * @param comparison one of <, > or =
+     * @param value the number of locations to compare to
+     * @return the rows of every scenario whose number of locations matches the comparison
+     */
+    private CompressedBitmap getLocationCountRows(char comparison, String value) {
+        int locations;
+        try {
+            locations = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(LOCATIONS_PREFIX + comparison + value);
+        }
+        CompressedBitmap rows = new CompressedBitmap();
+        for (Map.Entry<Integer, CompressedBitmap> entry : locationCountRows.entrySet()) {
+            boolean matches;
+            switch (comparison) {
+                case '<':
+                    matches = entry.getKey() < locations;
+                    break;
+                case '>':
+                    matches = entry.getKey() > locations;
+                    break;
+                case '=':
+                    matches = entry.getKey() == locations;
+                    break;
+                default:
+                    throw new IllegalArgumentException(LOCATIONS_PREFIX + comparison + value);
+            }
+            if (matches) {
+                rows = rows.or(entry.getValue());
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Recreates a logged character
+     * @param lineArray the columns of the logged character
+     * @return the character
+     */
+    private LivingBeing parseCharacter(String[] lineArray) {
+        try {
+            int age = Integer.parseInt(lineArray[2]);
+            if (lineArray[0].equals("human")) {
+                return new Human(lineArray[1], age, lineArray[3], lineArray[4], Boolean.parseBoolean(lineArray[5]));
+            } else if (lineArray[0].equals("animal")) {
+                return new Animal(lineArray[1], age, lineArray[3], lineArray[6], Boolean.parseBoolean(lineArray[7]));
+            }
+        } catch (NumberFormatException | InvalidCharacteristicException | ArrayIndexOutOfBoundsException e) {
+            //Handled below
+        }
+        // This should only ever be reached if the log file is corrupted
+        System.out.print("ERROR: LogFile is corrupted!");
+        System.exit(1);
+        return null;
+    }
+}
@@ -1,10 +1,13 @@
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Scanner;
+import java.util.function.BooleanSupplier;
 
 import lib.exceptions.EmptyFileException;
-import lib.exceptions.InvalidCharacteristicException;
+import lib.LivingBeing;
 
 /**
  * A Class that generates the audit of the RescueBot program from it's log file
@@ -16,6 +19,8 @@ public class Auditor {
     private ArrayList<Integer> userSavedLocations;
     private ArrayList<Scenario> algorithmDecidedScenarios;
     private ArrayList<Integer> algorithmSavedLocations;
+    private StatisticsGenerator userStatistics;
+    private StatisticsGenerator algorithmStatistics;
 
     public Auditor() {
         userDecidedScenarios = new ArrayList<>();
@@ -35,28 +40,110 @@ public class Auditor {
         if (userDecidedScenarios.size() > 0) {
             System.out.println();
             printStatisticsForUser();
+            System.out.println();
+            printAgreementReport();
         }
     }
+
     /**
-     * Print the statistics for the user to the Console
+     * Print how often the user and the algorithm chose the same location for the same scenario
+     * The algorithm decisions are hash-joined to the user decisions on the scenario fingerprint,
+     * and scenarios only ever judged by the user are re-scored with the current decision algorithm
      */
-    private void printStatisticsForUser() {
-        StatisticsGenerator userStatistics = new StatisticsGenerator();
+    private void printAgreementReport() {
+        //Build side: the latest algorithm decision for each distinct scenario
+        HashMap<Long, Integer> algorithmDecisions = new HashMap<>();
+        for (int i = 0; i < algorithmDecidedScenarios.size(); i++) {
+            algorithmDecisions.put(algorithmDecidedScenarios.get(i).getFingerprint(), algorithmSavedLocations.get(i));
+        }
+        //Probe side: every user decision
+        int loggedByBoth = 0;
+        int agreedWhenLogged = 0;
+        int rescored = 0;
+        int agreedWhenRescored = 0;
         for (int i = 0; i < userDecidedScenarios.size(); i++) {
-            userStatistics.parseScenarioForStatistics(userDecidedScenarios.get(i), userSavedLocations.get(i));
+            Scenario userScenario = userDecidedScenarios.get(i);
+            Integer algorithmDecision = algorithmDecisions.get(userScenario.getFingerprint());
+            if (algorithmDecision != null) {
+                loggedByBoth++;
+                if (algorithmDecision.equals(userSavedLocations.get(i))) {
+                    agreedWhenLogged++;
+                }
+            } else {
+                rescored++;
+                Location savedLocation = RescueBot.decide(userScenario);
+                if (userScenario.getIndexOfLocation(savedLocation) == userSavedLocations.get(i)) {
+                    agreedWhenRescored++;
+                }
+            }
+        }
+        System.out.println("======================================");
+        System.out.println("# User vs Algorithm Agreement");
+        System.out.println("======================================");
+        System.out.println("- % AGREED AFTER " + userDecidedScenarios.size() + " USER DECISIONS");
+        System.out.printf("logged by both (%d): %.2f\n", loggedByBoth, getAgreementRatio(agreedWhenLogged, loggedByBoth));
+        System.out.printf("re-scored by algorithm (%d): %.2f\n", rescored, getAgreementRatio(agreedWhenRescored, rescored));
+        System.out.println("--");
+        System.out.printf("overall agreement: %.2f\n", getAgreementRatio(agreedWhenLogged + agreedWhenRescored, userDecidedScenarios.size()));
+    }
+
+    /**
+     * @param agreed number of decisions that agreed
+     * @param total number of decisions compared
+     * @return the ratio of agreed decisions, or 0 when there is nothing to compare
+     */
+    private double getAgreementRatio(int agreed, int total) {
+        if (total == 0) {
+            return 0;
         }
-        userStatistics.printStatistics("User Audit");
+        return (double) agreed / total;
+    }
+    /**
+     * Print the statistics for the user to the Console
+     */
+    private void printStatisticsForUser() {
+        getUserStatistics().printStatistics("User Audit");
     }
 
     /**
      * Print the statistics for the algorithm to the Console
      */
     private void printStatisticsForAlgorithm() {
-        StatisticsGenerator algorithmStatistics = new StatisticsGenerator();
-        for (int i = 0; i < algorithmDecidedScenarios.size(); i++) {
-            algorithmStatistics.parseScenarioForStatistics(algorithmDecidedScenarios.get(i), algorithmSavedLocations.get(i));
+        getAlgorithmStatistics().printStatistics("Algorithm Audit");
+    }
+
+    /**
+     * @return the statistics of every scenario decided by the user, generated the first time they are needed
+     */
+    public StatisticsGenerator getUserStatistics() {
+        if (userStatistics == null) {
+            userStatistics = new StatisticsGenerator();
+            for (int i = 0; i < userDecidedScenarios.size(); i++) {
+                userStatistics.parseScenarioForStatistics(userDecidedScenarios.get(i), userSavedLocations.get(i));
+            }
+        }
+        return userStatistics;
+    }
+
+    /**
+     * @return the statistics of every scenario decided by the algorithm, generated the first time they are needed
+     */
+    public StatisticsGenerator getAlgorithmStatistics() {
+        if (algorithmStatistics == null) {
+            algorithmStatistics = new StatisticsGenerator();
+            for (int i = 0; i < algorithmDecidedScenarios.size(); i++) {
+                algorithmStatistics.parseScenarioForStatistics(algorithmDecidedScenarios.get(i), algorithmSavedLocations.get(i));
+            }
         }
-        algorithmStatistics.printStatistics("Algorithm Audit");
+        return algorithmStatistics;
+    }
+
+    public boolean hasUserDecisions() {
+        return userDecidedScenarios.size() > 0;
+    }
+
+    public boolean hasAlgorithmDecisions() {
+        return algorithmDecidedScenarios.size() > 0;
     }
 
     /**
@@ -72,8 +159,97 @@ public class Auditor {
             throw new EmptyFileException();
         }
 
-        Scanner logReader = new Scanner(new File(logFilePath));
+        //Closing the stream also stops the threads decompressing a compressed log file
+        try (Scanner logReader = new Scanner(CompressedLog.openLogStream(logFile), CompressedLog.LOG_CHARSET)) {
+            readLog(logReader);
+            //The scanner ends quietly when the stream fails, e.g. on a corrupted or truncated block
+            if (logReader.ioException() != null) {
+                System.out.print("ERROR: LogFile is corrupted!");
+                System.exit(1);
+            }
+        }
+    }
+
+    /**
+     * Follows the log file while another process appends to it, redrawing the user and algorithm audits as batches are completed
+     * Only the text appended since the last read is parsed, and its scenarios are added to the statistics and then let go,
+     * so the cost of following depends on how quickly the log file grows rather than on its size
+     * @param logFilePath the path of the log file
+     * @param redrawMillis how often the audits are redrawn when they have changed
+     * @param stopRequested checked between redraws, following stops once it returns true
+     * @throws IOException thrown when the log file cannot be read
+     */
+    public void followLogFile(String logFilePath, long redrawMillis, BooleanSupplier stopRequested) throws IOException {
+        LogTail logTail = new LogTail(new File(logFilePath));
+        userStatistics = new StatisticsGenerator();
+        algorithmStatistics = new StatisticsGenerator();
+        boolean changed = true;
+        while (!stopRequested.getAsBoolean()) {
+            String appendedBatches = logTail.readCompleteBatches();
+            if (appendedBatches == null) {
+                //The log file was replaced, so the audits start again
+                userStatistics = new StatisticsGenerator();
+                algorithmStatistics = new StatisticsGenerator();
+                changed = true;
+            } else if (!appendedBatches.isEmpty()) {
+                readLog(new Scanner(appendedBatches));
+                addDecisionsToStatistics();
+                changed = true;
+            }
+            if (changed) {
+                renderLiveAudit(logFilePath);
+                changed = false;
+            }
+            try {
+                Thread.sleep(redrawMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adds the scenarios read so far to the statistics, and forgets them
+     */
+    private void addDecisionsToStatistics() {
+        for (int i = 0; i < userDecidedScenarios.size(); i++) {
+            userStatistics.parseScenarioForStatistics(userDecidedScenarios.get(i), userSavedLocations.get(i));
+        }
+        for (int i = 0; i < algorithmDecidedScenarios.size(); i++) {
+            algorithmStatistics.parseScenarioForStatistics(algorithmDecidedScenarios.get(i), algorithmSavedLocations.get(i));
+        }
+        userDecidedScenarios.clear();
+        userSavedLocations.clear();
+        algorithmDecidedScenarios.clear();
+        algorithmSavedLocations.clear();
+    }
+
+    /**
+     * Clears the console and draws the current audits in one go
+     */
+    private void renderLiveAudit(String logFilePath) {
+        ReportRenderer renderer = ReportRenderer.getConsole();
+        //Move the cursor home and clear the screen
+        renderer.append("\033[H\033[2J");
+        renderer.line("Following " + logFilePath + ", press Enter to return to main menu.");
+        if (algorithmStatistics.getScenarioCount() > 0) {
+            algorithmStatistics.renderStatistics(renderer, "Algorithm Audit");
+        }
+        if (userStatistics.getScenarioCount() > 0) {
+            renderer.line("");
+            userStatistics.renderStatistics(renderer, "User Audit");
+        }
+        if (algorithmStatistics.getScenarioCount() == 0 && userStatistics.getScenarioCount() == 0) {
+            renderer.line("No history found.");
+        }
+        renderer.flush();
+    }
 
+    /**
+     * Recreates the decided scenarios of every batch in a log
+     * @param logReader the scanner that is reading the plain text of the log
+     */
+    private void readLog(Scanner logReader) {
         while (logReader.hasNextLine()) {
             String[] lineArray = logReader.nextLine().split(",", 8);
             //Skips the header line and splitting line
@@ -123,9 +299,7 @@ public class Auditor {
             } 
             // All other chekcs have been done, so the characters can be added to the previously added location
             else {
-                try {
-                    userDecidedScenarios.get(userDecidedScenarios.size() - 1).addCharacter(lineArray);
-                } catch (NumberFormatException | InvalidCharacteristicException e) {
+                if (userDecidedScenarios.get(userDecidedScenarios.size() - 1).addCharacter(lineArray) != LivingBeing.VALID) {
                     // This should only ever be reached if the log file is corrupted
                     System.out.print("ERROR: LogFile is corrupted!");
                     System.exit(1);
@@ -164,9 +338,7 @@ public class Auditor {
             } 
             // All other chekcs have been done, so the characters can be added to the previously added location
             else {
-                try {
-                    algorithmDecidedScenarios.get(algorithmDecidedScenarios.size() - 1).addCharacter(lineArray);
-                } catch (NumberFormatException | InvalidCharacteristicException e) {
+                if (algorithmDecidedScenarios.get(algorithmDecidedScenarios.size() - 1).addCharacter(lineArray) != LivingBeing.VALID) {
                     // This should only ever be reached if the log file is corrupted
                     System.out.print("ERROR: LogFile is corrupted!");
                     System.exit(1);
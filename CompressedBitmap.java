@@ -0,0 +1,249 @@
+import java.util.Arrays;
+
+/**
+ * A compressed set of row numbers, used by the audit index
+ * Rows are split into containers of 65536 rows. A container with few rows stores them as a sorted array,
+ * a container with many rows stores them as a plain bitmap, so both rare and common attribute values stay small
+ * @author Joshia Nambi
+ */
+public class CompressedBitmap {
+
+    private final static int CONTAINER_BITS = 16;
+    private final static int CONTAINER_MASK = (1 << CONTAINER_BITS) - 1;
+    private final static int ARRAY_LIMIT = 4096;                //Above this many rows a bitmap container is smaller than an array
+    private final static int WORDS_PER_CONTAINER = (1 << CONTAINER_BITS) / 64;
+
+    private int[] keys = new int[4];                //The high 16 bits of the rows in each container
+    private Object[] containers = new Object[4];    //Either a char[] of the low 16 bits (sorted), or a long[] bitmap
+    private int[] cardinalities = new int[4];
+    private int size = 0;
+
+    /**
+     * Adds a row, rows must be added in increasing order
+     * @param row the row number
+     */
+    public void add(int row) {
+        int key = row >>> CONTAINER_BITS;
+        char low = (char) (row & CONTAINER_MASK);
+        if (size == 0 || keys[size - 1] != key) {
+            if (size > 0 && keys[size - 1] > key) {
+                throw new IllegalArgumentException("rows must be added in increasing order");
+            }
+            appendContainer(key, new char[16], 0);
+        }
+        int last = size - 1;
+        if (containers[last] instanceof char[]) {
+            char[] array = (char[]) containers[last];
+            int cardinality = cardinalities[last];
+            if (cardinality > 0 && array[cardinality - 1] >= low) {
+                if (array[cardinality - 1] == low) {
+                    return;
+                }
+                throw new IllegalArgumentException("rows must be added in increasing order");
+            }
+            if (cardinality == ARRAY_LIMIT) {
+                containers[last] = toWords(array, cardinality);
+            } else {
+                if (cardinality == array.length) {
+                    array = Arrays.copyOf(array, Math.min(ARRAY_LIMIT, array.length * 2));
+                    containers[last] = array;
+                }
+                array[cardinality] = low;
+                cardinalities[last]++;
+                return;
+            }
+        }
+        long[] words = (long[]) containers[last];
+        if ((words[low >>> 6] & (1L << low)) == 0) {
+            words[low >>> 6] |= 1L << low;
+            cardinalities[last]++;
+        }
+    }
+
+    /**
+     * Adds every row in a range, rows must be added in increasing order
+     * @param from first row (inclusive)
+     * @param to last row (exclusive)
+     */
+    public void addRange(int from, int to) {
+        for (int row = from; row < to; row++) {
+            add(row);
+        }
+    }
+
+    /**
+     * @return the number of rows in this set
+     */
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += cardinalities[i];
+        }
+        return cardinality;
+    }
+
+    /**
+     * @param other another set of rows
+     * @return the rows in both sets
+     */
+    public CompressedBitmap and(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                long[] words = getWords(i);
+                long[] otherWords = other.getWords(j);
+                for (int w = 0; w < WORDS_PER_CONTAINER; w++) {
+                    words[w] &= otherWords[w];
+                }
+                result.appendWords(keys[i], words);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param other another set of rows
+     * @return the rows in either set
+     */
+    public CompressedBitmap or(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j >= other.size || (i < size && keys[i] < other.keys[j])) {
+                result.appendWords(keys[i], getWords(i));
+                i++;
+            } else if (i >= size || keys[i] > other.keys[j]) {
+                result.appendWords(other.keys[j], other.getWords(j));
+                j++;
+            } else {
+                long[] words = getWords(i);
+                long[] otherWords = other.getWords(j);
+                for (int w = 0; w < WORDS_PER_CONTAINER; w++) {
+                    words[w] |= otherWords[w];
+                }
+                result.appendWords(keys[i], words);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param other another set of rows
+     * @return the rows in this set that are not in the other set
+     */
+    public CompressedBitmap andNot(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            long[] words = getWords(i);
+            if (j < other.size && other.keys[j] == keys[i]) {
+                long[] otherWords = other.getWords(j);
+                for (int w = 0; w < WORDS_PER_CONTAINER; w++) {
+                    words[w] &= ~otherWords[w];
+                }
+            }
+            result.appendWords(keys[i], words);
+        }
+        return result;
+    }
+
+    /**
+     * @param other another set of rows
+     * @return the number of rows in both sets, without building the intersection
+     */
+    public int andCardinality(CompressedBitmap other) {
+        int cardinality = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                long[] words = getWords(i);
+                long[] otherWords = other.getWords(j);
+                for (int w = 0; w < WORDS_PER_CONTAINER; w++) {
+                    cardinality += Long.bitCount(words[w] & otherWords[w]);
+                }
+                i++;
+                j++;
+            }
+        }
+        return cardinality;
+    }
+
+    /**
+     * @param index index of a container
+     * @return a copy of the container as a bitmap
+     */
+    private long[] getWords(int index) {
+        if (containers[index] instanceof long[]) {
+            return ((long[]) containers[index]).clone();
+        }
+        return toWords((char[]) containers[index], cardinalities[index]);
+    }
+
+    private static long[] toWords(char[] array, int cardinality) {
+        long[] words = new long[WORDS_PER_CONTAINER];
+        for (int i = 0; i < cardinality; i++) {
+            words[array[i] >>> 6] |= 1L << array[i];
+        }
+        return words;
+    }
+
+    /**
+     * Appends the result of an operation as a container, compressing it back to an array if it is sparse
+     * @param key the high 16 bits of the rows in the container
+     * @param words the rows as a bitmap
+     */
+    private void appendWords(int key, long[] words) {
+        int cardinality = 0;
+        for (long word : words) {
+            cardinality += Long.bitCount(word);
+        }
+        if (cardinality == 0) {
+            return;
+        }
+        if (cardinality > ARRAY_LIMIT) {
+            appendContainer(key, words, cardinality);
+            return;
+        }
+        char[] array = new char[cardinality];
+        int position = 0;
+        for (int w = 0; w < WORDS_PER_CONTAINER; w++) {
+            long word = words[w];
+            while (word != 0) {
+                array[position++] = (char) (w * 64 + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        appendContainer(key, array, cardinality);
+    }
+
+    private void appendContainer(int key, Object container, int cardinality) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+            cardinalities = Arrays.copyOf(cardinalities, size * 2);
+        }
+        keys[size] = key;
+        containers[size] = container;
+        cardinalities[size] = cardinality;
+        size++;
+    }
+}
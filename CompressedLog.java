@@ -0,0 +1,324 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Reads and writes log files made of independently compressed blocks
+ * A compressed log file starts with the bytes "RBLZ", followed by blocks of [raw length][compressed length][deflated text].
+ * Every block holds whole batches (ending on a '-----' line), so blocks can be decompressed in parallel and
+ * concatenating the decompressed blocks gives exactly the plain text log file
+ * @author Joshia Nambi
+ */
+public class CompressedLog {
+
+    private final static byte[] MAGIC = {'R', 'B', 'L', 'Z'};
+    public final static Charset LOG_CHARSET = StandardCharsets.UTF_8;     //The text of every log file, plain or compressed, whatever the platform
+    private final static int BLOCKS_IN_FLIGHT_PER_THREAD = 2;   //How far ahead of the reader blocks are decompressed
+    private final static int MAX_DEFLATE_RATIO = 1032;          //Deflate never expands data more than this, so larger raw lengths are corrupted
+    private final static int MAX_BLOCK_LENGTH = Integer.MAX_VALUE - 8;  //The largest array, so the largest block that can be read
+
+    private static boolean compressNewLogs = false;
+
+    /**
+     * Chooses the format of log files that don't exist yet, existing log files always keep their format
+     * @param compress true to create compressed log files
+     */
+    public static void setCompressNewLogs(boolean compress) {
+        compressNewLogs = compress;
+    }
+
+    /**
+     * @param logFile the log file
+     * @return true if batches should be appended to the log file as compressed blocks
+     */
+    public static boolean shouldCompress(File logFile) {
+        if (logFile.length() > 0) {
+            return isCompressed(logFile);
+        }
+        return compressNewLogs;
+    }
+
+    /**
+     * @param logFile the open log file
+     * @return true if batches should be appended to the log file as compressed blocks
+     * @throws IOException thrown when the log file cannot be read
+     */
+    public static boolean shouldCompress(FileChannel logFile) throws IOException {
+        if (logFile.size() == 0) {
+            return compressNewLogs;
+        }
+        ByteBuffer start = ByteBuffer.allocate(MAGIC.length);
+        while (start.hasRemaining() && logFile.read(start, start.position()) > 0) {
+            //Keep reading until the start of the file has been read
+        }
+        return Arrays.equals(start.array(), MAGIC);
+    }
+
+    /**
+     * @return the bytes a compressed log file starts with
+     */
+    public static byte[] getMagic() {
+        return MAGIC.clone();
+    }
+
+    /**
+     * @param logFile the log file
+     * @return true if the log file is made of compressed blocks
+     */
+    public static boolean isCompressed(File logFile) {
+        byte[] start = new byte[MAGIC.length];
+        try (DataInputStream logReader = new DataInputStream(new FileInputStream(logFile))) {
+            logReader.readFully(start);
+        } catch (IOException e) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (start[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compresses text (one or more whole batches) into one block, ready to be appended to a log file
+     * @param text the text of the block
+     * @return the block, including its header
+     */
+    public static byte[] compressBlock(String text) {
+        byte[] raw = text.getBytes(LOG_CHARSET);
+        Deflater deflater = new Deflater();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4 + 64);
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            compressed.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+
+        //The block is written in one go, so a reader never sees half of its header
+        ByteBuffer block = ByteBuffer.allocate(compressed.size() + 8);
+        block.putInt(raw.length);
+        block.putInt(compressed.size());
+        block.put(compressed.toByteArray());
+        return block.array();
+    }
+
+    /**
+     * Opens a log file for reading as plain text, decompressing the blocks of a compressed log file in parallel
+     * @param logFile the log file
+     * @return the plain text of the log file
+     * @throws FileNotFoundException thrown when file cannot be found
+     */
+    public static InputStream openLogStream(File logFile) throws FileNotFoundException {
+        if (!isCompressed(logFile)) {
+            return new BufferedInputStream(new FileInputStream(logFile));
+        }
+        return new BlockDecodingInputStream(logFile);
+    }
+
+    /**
+     * Decompresses the complete blocks of a compressed log file that start at or after an offset, used to follow a growing log file
+     * A block whose bytes have not all been written yet is left for the next call
+     * @param logFile the open log file
+     * @param offset the offset of the next unread block (0 for the start of the file)
+     * @param text where the decompressed text of the blocks is written
+     * @param maxBytes stop after roughly this many compressed bytes have been read
+     * @return the offset after the last complete block that was read
+     * @throws IOException thrown when the file cannot be read or a block is corrupted
+     */
+    public static long readCompleteBlocks(RandomAccessFile logFile, long offset, ByteArrayOutputStream text, long maxBytes) throws IOException {
+        long length = logFile.length();
+        long start = Math.max(offset, MAGIC.length);
+        long position = start;
+        while (position + 8 <= length && position - start < maxBytes) {
+            logFile.seek(position);
+            int rawLength = logFile.readInt();
+            int compressedLength = logFile.readInt();
+            checkBlockLengths(rawLength, compressedLength);
+            if (position + 8 + compressedLength > length) {
+                break;
+            }
+            byte[] compressed = new byte[compressedLength];
+            logFile.readFully(compressed);
+            try {
+                text.write(inflate(compressed, rawLength));
+            } catch (DataFormatException e) {
+                throw new IOException("corrupted log block", e);
+            }
+            position += 8 + compressedLength;
+        }
+        return position;
+    }
+
+    /**
+     * Streams the decompressed text of a compressed log file, decompressing the next few blocks on other threads
+     */
+    private static class BlockDecodingInputStream extends InputStream {
+
+        private DataInputStream compressedReader;
+        private FileChannel channel;            //Only used to find how many bytes of the file are left
+        private long blockPosition;             //Offset of the next block header in the file
+        private ExecutorService decoders;
+        private ArrayDeque<Future<byte[]>> decodingBlocks;
+        private int blocksInFlight;
+        private boolean endOfFile = false;
+        private byte[] currentBlock = new byte[0];
+        private int position = 0;
+
+        private BlockDecodingInputStream(File logFile) throws FileNotFoundException {
+            FileInputStream logReader = new FileInputStream(logFile);
+            channel = logReader.getChannel();
+            blockPosition = MAGIC.length;
+            compressedReader = new DataInputStream(new BufferedInputStream(logReader));
+            try {
+                compressedReader.readFully(new byte[MAGIC.length]);
+            } catch (IOException e) {
+                endOfFile = true;
+            }
+            int threads = Runtime.getRuntime().availableProcessors();
+            decoders = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread decoder = new Thread(runnable, "rescuebot-log-decoder");
+                decoder.setDaemon(true);
+                return decoder;
+            });
+            decodingBlocks = new ArrayDeque<>();
+            blocksInFlight = threads * BLOCKS_IN_FLIGHT_PER_THREAD;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fillCurrentBlock()) {
+                return -1;
+            }
+            return currentBlock[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!fillCurrentBlock()) {
+                return -1;
+            }
+            int count = Math.min(length, currentBlock.length - position);
+            System.arraycopy(currentBlock, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            decoders.shutdownNow();
+            compressedReader.close();
+        }
+
+        /**
+         * Makes sure there is unread decompressed text, moving on to the next block if needed
+         * @return false once every block has been read
+         */
+        private boolean fillCurrentBlock() throws IOException {
+            while (position >= currentBlock.length) {
+                scheduleBlocks();
+                if (decodingBlocks.isEmpty()) {
+                    return false;
+                }
+                try {
+                    currentBlock = decodingBlocks.poll().get();
+                } catch (InterruptedException | ExecutionException e) {
+                    throw new IOException("corrupted log block", e);
+                }
+                position = 0;
+            }
+            return true;
+        }
+
+        /**
+         * Reads compressed blocks from the file and hands them to the decoders until enough blocks are in flight
+         */
+        private void scheduleBlocks() throws IOException {
+            while (!endOfFile && decodingBlocks.size() < blocksInFlight) {
+                int rawLength;
+                try {
+                    rawLength = compressedReader.readInt();
+                } catch (EOFException e) {
+                    endOfFile = true;
+                    break;
+                }
+                int compressedLength = compressedReader.readInt();
+                checkBlockLengths(rawLength, compressedLength);
+                blockPosition += 8;
+                //A block can't be longer than the rest of the file, which is checked before anything is allocated for it
+                if (compressedLength > channel.size() - blockPosition) {
+                    throw new IOException("corrupted log block");
+                }
+                byte[] compressed = new byte[compressedLength];
+                compressedReader.readFully(compressed);
+                blockPosition += compressedLength;
+                decodingBlocks.add(decoders.submit(() -> inflate(compressed, rawLength)));
+            }
+        }
+    }
+
+    /**
+     * Checks the lengths in the header of a block before anything is allocated for it
+     * The raw length can be at most the compressed length times the deflate ratio, plus a little for the header of the deflate stream
+     * @param rawLength the length of the block once decompressed
+     * @param compressedLength the length of the compressed block
+     * @throws IOException thrown when a length is negative or larger than the block could be
+     */
+    private static void checkBlockLengths(int rawLength, int compressedLength) throws IOException {
+        if (rawLength < 0 || compressedLength < 0 || rawLength > MAX_BLOCK_LENGTH || compressedLength > MAX_BLOCK_LENGTH
+                || rawLength > (long) compressedLength * MAX_DEFLATE_RATIO + 64) {
+            throw new IOException("corrupted log block");
+        }
+    }
+
+    /**
+     * Decompresses one block
+     * @param compressed the compressed block
+     * @param rawLength the length of the block once decompressed
+     * @return the text of the block
+     * @throws DataFormatException thrown when the block is corrupted
+     */
+    private static byte[] inflate(byte[] compressed, int rawLength) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        inflater.setInput(compressed);
+        byte[] raw = new byte[rawLength];
+        int length = 0;
+        while (length < rawLength && !inflater.finished()) {
+            int inflated = inflater.inflate(raw, length, rawLength - length);
+            if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                break;
+            }
+            length += inflated;
+        }
+        inflater.end();
+        if (length != rawLength) {
+            throw new DataFormatException("truncated log block");
+        }
+        return raw;
+    }
+}
@@ -0,0 +1,291 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes large synthetic scenario files for load tests, in the same format as scenarios.csv
+ * The characters are split into shards that are generated in parallel, each straight into a byte buffer with its own random numbers.
+ * The shards are written to the file in order, so the same seed always gives the same file, whatever the number of processors
+ * @author Joshia Nambi
+ */
+public class CorpusGenerator {
+
+    private final static int CHARACTERS_PER_SHARD = 65536;
+    private final static int SHARDS_IN_FLIGHT_PER_THREAD = 2;  //How far ahead of the writer shards are generated
+    private final static int MIN_LOCATIONS = 2;
+    private final static int MAX_LOCATIONS = 3;
+    private final static int MIN_CHARACTERS = 1;
+    private final static int MAX_CHARACTERS = 5;
+    private final static int MAX_GENERATED_AGE = 80;
+    private final static int COORDINATE_DECIMALS = 10000;     //Coordinates are written with 4 decimals
+
+    private final static byte[] HEADER = bytes(",gender,age,bodyType,profession,pregnant,species,isPet\n");
+    private final static byte[] SCENARIO = bytes("scenario:");
+    private final static byte[] LOCATION = bytes("location:");
+    private final static byte[] END_OF_ROW = bytes(",,,,,,,\n");
+    private final static byte[] NORTH = bytes(" N;");
+    private final static byte[] SOUTH = bytes(" S;");
+    private final static byte[] EAST = bytes(" E;");
+    private final static byte[] WEST = bytes(" W;");
+    private final static byte[] TRESPASSING = bytes("trespassing");
+    private final static byte[] LEGAL = bytes("legal");
+    private final static byte[] HUMAN = bytes("human,");
+    private final static byte[] ANIMAL = bytes("animal,");
+    private final static byte[] NO_PROFESSION = bytes("none");
+    private final static byte[] PREGNANT_END = bytes(",true,,\n");
+    private final static byte[] NOT_PREGNANT_END = bytes(",false,,\n");
+    private final static byte[] NO_HUMAN_COLUMNS = bytes(",,,");
+    private final static byte[] PET_END = bytes(",true\n");
+    private final static byte[] NOT_PET_END = bytes(",false\n");
+    private final static byte[][] DISASTERS = byteArrays("flood", "cyclone", "earthquake", "bushfire", "tsunami", "tornado");
+    private final static byte[][] GENDERS = byteArrays("male", "female");
+    private final static byte[][] BODY_TYPES = byteArrays("overweight", "athletic", "average");
+    private final static byte[][] PROFESSIONS = byteArrays("student", "doctor", "professor", "criminal", "ceo", "homeless", "lawyer", "engineer", "unemployed");
+    private final static byte[][] SPECIES = byteArrays("dog", "cat", "ferret", "chicken", "cow", "wolf", "kangaroo",
+                                                "emu", "snake", "cockatoo", "koala", "possum", "wallaby");
+    private final static int PET_SPECIES = 3;     //Only the first few species (dog, cat and ferret) can be pets
+
+    private static double humanRatio = 0.5;
+    private static double trespassRatio = 0.5;
+    private static double petRatio = 0.5;
+
+    private long characterCount;
+    private long scenariosWritten = 0;
+
+    /**
+     * @param characterCount the number of characters to generate
+     */
+    public CorpusGenerator(long characterCount) {
+        this.characterCount = characterCount;
+    }
+
+    /**
+     * @param humanRatio the fraction of characters that are humans (the rest are animals)
+     */
+    public static void setHumanRatio(double humanRatio) {
+        CorpusGenerator.humanRatio = humanRatio;
+    }
+
+    /**
+     * @param trespassRatio the fraction of locations that were trespassed
+     */
+    public static void setTrespassRatio(double trespassRatio) {
+        CorpusGenerator.trespassRatio = trespassRatio;
+    }
+
+    /**
+     * @param petRatio the fraction of dogs, cats and ferrets that are pets
+     */
+    public static void setPetRatio(double petRatio) {
+        CorpusGenerator.petRatio = petRatio;
+    }
+
+    /**
+     * Generates the scenarios and writes them to a file, replacing the file if it exists
+     * @param scenariosFile the file to write
+     * @param seed the seed of the random numbers, so a file can be generated again
+     * @throws IOException thrown when the file cannot be written
+     */
+    public void generate(File scenariosFile, long seed) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService generators = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread generator = new Thread(runnable, "rescuebot-corpus-generator");
+            generator.setDaemon(true);
+            return generator;
+        });
+        ArrayDeque<Future<Shard>> generatingShards = new ArrayDeque<>();
+        try (FileChannel scenariosWriter = FileChannel.open(scenariosFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(scenariosWriter, HEADER, HEADER.length);
+            long charactersScheduled = 0;
+            while (charactersScheduled < characterCount || !generatingShards.isEmpty()) {
+                //Keep every thread busy, the random numbers of each shard are split off in order
+                while (charactersScheduled < characterCount && generatingShards.size() < threads * SHARDS_IN_FLIGHT_PER_THREAD) {
+                    int shardCharacters = (int) Math.min(CHARACTERS_PER_SHARD, characterCount - charactersScheduled);
+                    SplittableRandom shardRandom = random.split();
+                    generatingShards.add(generators.submit(() -> generateShard(shardCharacters, shardRandom)));
+                    charactersScheduled += shardCharacters;
+                }
+                Shard shard = generatingShards.poll().get();
+                write(scenariosWriter, shard.bytes, shard.length);
+                scenariosWritten += shard.scenarioCount;
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IOException("could not generate scenarios", e);
+        } finally {
+            generators.shutdownNow();
+        }
+    }
+
+    public long getScenariosWritten() {
+        return scenariosWritten;
+    }
+
+    /**
+     * A generated part of the file
+     */
+    private static class Shard {
+        private byte[] bytes;
+        private int length;
+        private int scenarioCount;
+
+        private Shard(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        private void append(byte[] value) {
+            ensureCapacity(value.length);
+            System.arraycopy(value, 0, bytes, length, value.length);
+            length += value.length;
+        }
+
+        private void append(char value) {
+            ensureCapacity(1);
+            bytes[length++] = (byte) value;
+        }
+
+        /**
+         * Appends a number that isn't negative
+         */
+        private void append(int value) {
+            ensureCapacity(11);
+            int start = length;
+            do {
+                bytes[length++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value > 0);
+            //The digits were written backwards
+            for (int i = start, j = length - 1; i < j; i++, j--) {
+                byte digit = bytes[i];
+                bytes[i] = bytes[j];
+                bytes[j] = digit;
+            }
+        }
+
+        /**
+         * Appends a fixed point number with 4 decimals, e.g. 13.7154
+         */
+        private void appendCoordinate(int value) {
+            append(value / COORDINATE_DECIMALS);
+            append('.');
+            int decimals = value % COORDINATE_DECIMALS;
+            for (int place = COORDINATE_DECIMALS / 10; place > 0; place /= 10) {
+                append((char) ('0' + decimals / place % 10));
+            }
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > bytes.length) {
+                byte[] grown = new byte[Math.max(bytes.length * 2, length + extra)];
+                System.arraycopy(bytes, 0, grown, 0, length);
+                bytes = grown;
+            }
+        }
+    }
+
+    /**
+     * Generates scenarios holding exactly a number of characters
+     * A scenario has 2 to 3 locations, unless a single character is left for the last scenario
+     * @param characters the number of characters
+     * @param random the random numbers of the shard
+     * @return the shard
+     */
+    private Shard generateShard(int characters, SplittableRandom random) {
+        Shard shard = new Shard(characters * 40 + 1024);
+        int remaining = characters;
+        while (remaining > 0) {
+            int locations = Math.min(random.nextInt(MIN_LOCATIONS, MAX_LOCATIONS + 1), remaining);
+            shard.append(SCENARIO);
+            shard.append(DISASTERS[random.nextInt(DISASTERS.length)]);
+            shard.append(END_OF_ROW);
+            for (int i = 0; i < locations; i++) {
+                //Leave at least one character for every location still to come
+                int locationCharacters = Math.min(random.nextInt(MIN_CHARACTERS, MAX_CHARACTERS + 1), remaining - (locations - i - 1));
+                appendLocation(shard, random);
+                for (int j = 0; j < locationCharacters; j++) {
+                    if (random.nextDouble() < humanRatio) {
+                        appendHuman(shard, random);
+                    } else {
+                        appendAnimal(shard, random);
+                    }
+                }
+                remaining -= locationCharacters;
+            }
+            shard.scenarioCount++;
+        }
+        return shard;
+    }
+
+    private void appendLocation(Shard shard, SplittableRandom random) {
+        shard.append(LOCATION);
+        shard.appendCoordinate(random.nextInt(90 * COORDINATE_DECIMALS + 1));
+        shard.append(random.nextBoolean() ? NORTH : SOUTH);
+        shard.appendCoordinate(random.nextInt(180 * COORDINATE_DECIMALS + 1));
+        shard.append(random.nextBoolean() ? EAST : WEST);
+        shard.append(random.nextDouble() < trespassRatio ? TRESPASSING : LEGAL);
+        shard.append(END_OF_ROW);
+    }
+
+    /**
+     * Appends a human with the same rules as a generated human: only adults have a profession, and only adult females can be pregnant
+     */
+    private void appendHuman(Shard shard, SplittableRandom random) {
+        int gender = random.nextInt(GENDERS.length);
+        int age = random.nextInt(MAX_GENERATED_AGE);
+        boolean adult = age >= 17 && age <= 68;
+        shard.append(HUMAN);
+        shard.append(GENDERS[gender]);
+        shard.append(',');
+        shard.append(age);
+        shard.append(',');
+        shard.append(BODY_TYPES[random.nextInt(BODY_TYPES.length)]);
+        shard.append(',');
+        shard.append(adult ? PROFESSIONS[random.nextInt(PROFESSIONS.length)] : NO_PROFESSION);
+        shard.append(adult && gender == 1 && random.nextBoolean() ? PREGNANT_END : NOT_PREGNANT_END);
+    }
+
+    /**
+     * Appends an animal with the same rules as a generated animal: only dogs, cats and ferrets can be pets
+     */
+    private void appendAnimal(Shard shard, SplittableRandom random) {
+        int species = random.nextInt(SPECIES.length);
+        shard.append(ANIMAL);
+        shard.append(GENDERS[random.nextInt(GENDERS.length)]);
+        shard.append(',');
+        shard.append(random.nextInt(MAX_GENERATED_AGE));
+        shard.append(',');
+        shard.append(BODY_TYPES[random.nextInt(BODY_TYPES.length)]);
+        shard.append(NO_HUMAN_COLUMNS);
+        shard.append(SPECIES[species]);
+        shard.append(species < PET_SPECIES && random.nextDouble() < petRatio ? PET_END : NOT_PET_END);
+    }
+
+    private static void write(FileChannel channel, byte[] bytes, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[][] byteArrays(String... texts) {
+        byte[][] values = new byte[texts.length][];
+        for (int i = 0; i < texts.length; i++) {
+            values[i] = bytes(texts[i]);
+        }
+        return values;
+    }
+}
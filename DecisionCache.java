@@ -0,0 +1,112 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded least-recently-used cache of RescueBot decisions
+ * Decisions are keyed by the fingerprint of the scenario together with the fingerprint of the weight profile that decided it.
+ * Both fingerprints and the number of locations are compared on a hit, so a decision is never given to a different scenario
+ * @author Joshia Nambi
+ */
+public class DecisionCache {
+
+    /**
+     * The identity of a decided scenario: its fingerprint and the fingerprint of the profile that decided it
+     */
+    private static class DecisionKey {
+        private long scenarioFingerprint;
+        private long profileFingerprint;
+
+        private DecisionKey(Scenario scenario, WeightProfile profile) {
+            this.scenarioFingerprint = scenario.getFingerprint();
+            this.profileFingerprint = profile.getFingerprint();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof DecisionKey)) {
+                return false;
+            }
+            DecisionKey key = (DecisionKey) other;
+            return scenarioFingerprint == key.scenarioFingerprint && profileFingerprint == key.profileFingerprint;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(scenarioFingerprint ^ (profileFingerprint * 0x9e3779b97f4a7c15L));
+        }
+    }
+
+    /**
+     * A decision, with the number of locations of the scenario it was made for
+     */
+    private static class Decision {
+        private int numberOfLocations;
+        private int savedLocationIndex;
+
+        private Decision(int numberOfLocations, int savedLocationIndex) {
+            this.numberOfLocations = numberOfLocations;
+            this.savedLocationIndex = savedLocationIndex;
+        }
+    }
+
+    private LinkedHashMap<DecisionKey, Decision> decisions;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param capacity the maximum number of decisions kept, the least recently used decision is evicted first
+     */
+    public DecisionCache(final int capacity) {
+        decisions = new LinkedHashMap<DecisionKey, Decision>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<DecisionKey, Decision> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Looks up a previous decision
+     * @param scenario the scenario to be decided
+     * @param profile the weight profile deciding it
+     * @return the index of the location that was saved, or null if the scenario hasn't been decided with this profile
+     */
+    public synchronized Integer get(Scenario scenario, WeightProfile profile) {
+        DecisionKey key = new DecisionKey(scenario, profile);
+        Decision decision = decisions.get(key);
+        if (decision != null && (decision.numberOfLocations != scenario.getNumberOfLocations()
+                || decision.savedLocationIndex >= scenario.getNumberOfLocations())) {
+            //The fingerprint of a different scenario collided with this one, so its decision doesn't apply
+            decisions.remove(key);
+            decision = null;
+        }
+        if (decision == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return decision.savedLocationIndex;
+    }
+
+    /**
+     * Remembers a decision
+     * @param scenario the scenario that was decided
+     * @param profile the weight profile that decided it
+     * @param savedLocationIndex the index of the location that was saved
+     */
+    public synchronized void put(Scenario scenario, WeightProfile profile, int savedLocationIndex) {
+        decisions.put(new DecisionKey(scenario, profile), new Decision(scenario.getNumberOfLocations(), savedLocationIndex));
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return decisions.size();
+    }
+}
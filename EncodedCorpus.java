@@ -0,0 +1,234 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import lib.Animal;
+import lib.AttributeDictionary;
+import lib.LivingBeing;
+
+/**
+ * A set of scenarios encoded once into flat primitive arrays, so they can be re-decided with many weight profiles cheaply
+ * Every location is encoded as the number of times each weighted characteristic appears among its characters (its feature counts)
+ * and whether it was trespassed. The counts are stored one feature at a time, so a scoring kernel can score neighbouring locations together.
+ * The reported attributes of its characters can also be kept as sparse counts, to calculate survival ratios
+ * @author Joshia Nambi
+ */
+public class EncodedCorpus {
+
+    private final static int SCORING_BLOCK = 4096;     //Locations scored at once, small enough for the scores to stay in cache
+
+    private String[] features;
+    private int[] scenarioStarts;       //Index of the first location of each scenario, with one extra entry for the end
+    private double[][] featureCounts;    //[feature][location]
+    private boolean[] trespassing;
+    private int[] attributeStarts;      //Index of the first attribute count of each location, with one extra entry for the end
+    private int[] attributeIds;
+    private int[] attributeCounts;
+    private ArrayList<String> attributes;
+    private long[] attributeTotals;     //Number of characters with each attribute across the whole corpus
+
+    /**
+     * Encodes scenarios against the characteristics of a weight profile
+     * @param scenarios the scenarios to encode
+     * @param profile the profile whose characteristics are the features, in the order weight vectors will use
+     * @param countAttributes true to also count attributes, which is only needed for survival ratios
+     */
+    public EncodedCorpus(List<Scenario> scenarios, WeightProfile profile, boolean countAttributes) {
+        this.features = profile.getCharacteristics();
+        int locationCount = 0;
+        for (Scenario scenario : scenarios) {
+            locationCount += scenario.getNumberOfLocations();
+        }
+        scenarioStarts = new int[scenarios.size() + 1];
+        featureCounts = new double[features.length][locationCount];
+        trespassing = new boolean[locationCount];
+        attributeStarts = new int[locationCount + 1];
+        attributeIds = new int[locationCount * 8];
+        attributeCounts = new int[locationCount * 8];
+        attributes = new ArrayList<>();
+        int[] attributeIndexes = new int[AttributeDictionary.getAttributeIdLimit()];   //The index in attributes of each attribute id plus one, 0 if not seen yet
+        HashMap<String, Integer> speciesIndexes = new HashMap<>();                      //The index in attributes of each species, which have no attribute id
+        int[] locationAttributeCounts = new int[0];
+        int[] descriptionIds = new int[RescueBot.DESCRIPTION_IDS];
+        int[] characterAttributeIds = new int[LivingBeing.MAX_ATTRIBUTE_IDS + 1];
+        int[] characterAttributes = new int[LivingBeing.MAX_ATTRIBUTE_IDS + 2];     //The index in attributes of each attribute of a character
+
+        int location = 0;
+        int attributePosition = 0;
+        for (int s = 0; s < scenarios.size(); s++) {
+            Scenario scenario = scenarios.get(s);
+            scenarioStarts[s] = location;
+            for (int i = 0; i < scenario.getNumberOfLocations(); i++, location++) {
+                Location currentLocation = scenario.getLocation(i);
+                trespassing[location] = currentLocation.getIllegalEntry();
+                ArrayList<Integer> seenAttributes = new ArrayList<>();
+                for (int j = 0; j < currentLocation.getNumberOfCharacters(); j++) {
+                    LivingBeing character = currentLocation.getCharacter(j);
+                    //The same words the decision algorithm scores a character by
+                    if (character.getDescriptionIdCount() > descriptionIds.length) {
+                        descriptionIds = new int[character.getDescriptionIdCount()];
+                    }
+                    int words = character.getDescriptionIds(descriptionIds);
+                    for (int k = 0; k < words; k++) {
+                        int feature = profile.getFeatureIndex(descriptionIds[k]);
+                        if (feature >= 0) {
+                            featureCounts[feature][location]++;
+                        }
+                    }
+                    if (!countAttributes) {
+                        continue;
+                    }
+                    //The same attributes the statistics are calculated over
+                    int attributeCount = character.getAttributeIds(characterAttributeIds);
+                    characterAttributeIds[attributeCount++] = trespassing[location] ? AttributeDictionary.TRESPASSING : AttributeDictionary.LEGAL;
+                    int characterAttributeCount = 0;
+                    for (int k = 0; k < attributeCount; k++) {
+                        int id = attributeIndexes[characterAttributeIds[k]] - 1;
+                        if (id < 0) {
+                            id = attributes.size();
+                            attributes.add(AttributeDictionary.getLabel(characterAttributeIds[k]));
+                            attributeIndexes[characterAttributeIds[k]] = id + 1;
+                        }
+                        characterAttributes[characterAttributeCount++] = id;
+                        //Species have no attribute id, so the species is numbered by name, after the kind of character as in the array representation
+                        if (k == 0 && character instanceof Animal) {
+                            String species = ((Animal) character).getSpecies();
+                            Integer speciesId = speciesIndexes.get(species);
+                            if (speciesId == null) {
+                                speciesId = attributes.size();
+                                attributes.add(species);
+                                speciesIndexes.put(species, speciesId);
+                            }
+                            characterAttributes[characterAttributeCount++] = speciesId;
+                        }
+                    }
+                    if (locationAttributeCounts.length < attributes.size()) {
+                        locationAttributeCounts = Arrays.copyOf(locationAttributeCounts, attributes.size());
+                    }
+                    for (int k = 0; k < characterAttributeCount; k++) {
+                        if (locationAttributeCounts[characterAttributes[k]]++ == 0) {
+                            seenAttributes.add(characterAttributes[k]);
+                        }
+                    }
+                }
+                attributeStarts[location] = attributePosition;
+                for (int id : seenAttributes) {
+                    if (attributePosition == attributeIds.length) {
+                        attributeIds = Arrays.copyOf(attributeIds, attributeIds.length * 2);
+                        attributeCounts = Arrays.copyOf(attributeCounts, attributeCounts.length * 2);
+                    }
+                    attributeIds[attributePosition] = id;
+                    attributeCounts[attributePosition] = locationAttributeCounts[id];
+                    attributePosition++;
+                    locationAttributeCounts[id] = 0;
+                }
+            }
+        }
+        scenarioStarts[scenarios.size()] = location;
+        attributeStarts[location] = attributePosition;
+
+        attributeTotals = new long[attributes.size()];
+        for (int i = 0; i < attributePosition; i++) {
+            attributeTotals[attributeIds[i]] += attributeCounts[i];
+        }
+    }
+
+    /**
+     * Decides every scenario of the corpus with a weight vector, in the same way as the decision algorithm
+     * The locations are scored by the selected scoring kernel, which gives exactly the same scores as RescueBot.decide
+     * @param weights the weight of each feature
+     * @param tresspassPenality the factor that the score of a trespassing location is multiplied by
+     * @param savedLocations where the index of the saved location of each scenario is stored
+     */
+    public void decideAll(double[] weights, double tresspassPenality, int[] savedLocations) {
+        ScoringKernel kernel = RescueBot.getScoringKernel();
+        double[] likelinessToSave = new double[SCORING_BLOCK];
+        int blockStart = 0;
+        int blockEnd = 0;
+        for (int s = 0; s < getScenarioCount(); s++) {
+            //Score the next block of locations at once, a block always holds whole scenarios
+            if (scenarioStarts[s + 1] > blockEnd) {
+                blockStart = scenarioStarts[s];
+                blockEnd = blockStart;
+                int lastScenario = s;
+                while (lastScenario < getScenarioCount() && (blockEnd == blockStart || scenarioStarts[lastScenario + 1] - blockStart <= SCORING_BLOCK)) {
+                    blockEnd = scenarioStarts[++lastScenario];
+                }
+                if (blockEnd - blockStart > likelinessToSave.length) {
+                    likelinessToSave = new double[blockEnd - blockStart];
+                }
+                kernel.score(featureCounts, trespassing, weights, tresspassPenality, blockStart, blockEnd, likelinessToSave);
+            }
+            double maxLikelinessToSave = 0;
+            int indexOfMaxLikelinessToSave = 0;
+            for (int location = scenarioStarts[s]; location < scenarioStarts[s + 1]; location++) {
+                if (likelinessToSave[location - blockStart] > maxLikelinessToSave) {
+                    maxLikelinessToSave = likelinessToSave[location - blockStart];
+                    indexOfMaxLikelinessToSave = location - scenarioStarts[s];
+                }
+            }
+            savedLocations[s] = indexOfMaxLikelinessToSave;
+        }
+    }
+
+    /**
+     * Calculates the survival ratio of every attribute for a set of decisions
+     * @param savedLocations the index of the saved location of each scenario
+     * @return the survival ratio of each attribute, indexed like getAttributes()
+     */
+    public double[] getSurvivalRatios(int[] savedLocations) {
+        long[] saved = new long[attributes.size()];
+        for (int s = 0; s < getScenarioCount(); s++) {
+            int location = scenarioStarts[s] + savedLocations[s];
+            for (int i = attributeStarts[location]; i < attributeStarts[location + 1]; i++) {
+                saved[attributeIds[i]] += attributeCounts[i];
+            }
+        }
+        double[] ratios = new double[attributes.size()];
+        for (int i = 0; i < ratios.length; i++) {
+            ratios[i] = (double) saved[i] / attributeTotals[i];
+        }
+        return ratios;
+    }
+
+    public int getScenarioCount() {
+        return scenarioStarts.length - 1;
+    }
+
+    public int getLocationCount() {
+        return trespassing.length;
+    }
+
+    public String[] getFeatures() {
+        return features;
+    }
+
+    /**
+     * @return the attributes that survival ratios are calculated for
+     */
+    public ArrayList<String> getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * @return the index of the first location of each scenario, with one extra entry for the end
+     */
+    public int[] getScenarioStarts() {
+        return scenarioStarts;
+    }
+
+    /**
+     * @return the feature counts of every location, laid out as [feature][location]
+     */
+    public double[][] getFeatureCounts() {
+        return featureCounts;
+    }
+
+    /**
+     * @return whether each location was trespassed
+     */
+    public boolean[] getTrespassing() {
+        return trespassing;
+    }
+}
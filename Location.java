@@ -1,7 +1,6 @@
 import java.util.ArrayList;
 
 import lib.*;
-import lib.exceptions.InvalidCharacteristicException;
 
 /**
  * A location where people need rescuing using the RescueBot
@@ -9,32 +8,38 @@ import lib.exceptions.InvalidCharacteristicException;
  */
 public class Location {
     
-    private String longitude;
+    private String longitude;           //As written in the scenarios file, generated coordinates are only written out when needed
     private String latitude;
+    private int longitudeValue;         //Fixed point, see COORDINATE_SCALE
+    private int latitudeValue;
     private ArrayList<LivingBeing> characters; 
     private boolean illegalEntry;
     private final static int MAX_CHARACTERS_TO_GENERATE = 6;
     private final static int MIN_CHARACTERS_TO_GENERATE = 1;
 
+    //Returned when adding a character whose age is not a whole number
+    public final static int INVALID_NUMBER_FORMAT = -2;
+
+    //Coordinates are kept as whole numbers of 1/10000 of a degree, north and east are positive
+    public final static int COORDINATE_SCALE = 10000;
+    public final static int UNKNOWN_COORDINATE = Integer.MIN_VALUE;     //A coordinate that could not be parsed
+    private final static int COORDINATE_DECIMALS = 4;
+    private final static int MAX_DEGREES = 100000;       //Larger coordinates are not coordinates at all
+
+    //Constants for Column Numbers
+    private final static int AGE = 2;
+    private final static int PREGNANT = 5;
+    private final static int IS_PET = 7;
+
     /**
      * Default constructor to generate a random location with random characters
      */
     public Location() {
         characters = new ArrayList<>();
         //GENERATE LONGITUDE
-        double longValue =  Math.round((Math.random() * 360) * 100) /100 - 180;
-        if (((int) Math.round(Math.random())) == 1) {
-            longitude = longValue + " W";
-        } else {
-            longitude = longValue + " E";
-        }
+        longitudeValue = (int) Math.round((Math.random() * 360 - 180) * COORDINATE_SCALE);
         //GENERATE LATITUDE
-        double latValue = Math.round((Math.random() * 180) * 100) /100 - 90;
-        if (((int) Math.round(Math.random())) == 1) {
-            latitude = latValue + " N";
-        } else {
-            latitude = latValue + " S";
-        }
+        latitudeValue = (int) Math.round((Math.random() * 180 - 90) * COORDINATE_SCALE);
         //GENERATE TRESPASSING
         if (((int) Math.round(Math.random())) == 1) {
             illegalEntry = true;
@@ -62,6 +67,8 @@ public class Location {
     public Location(String latitude, String longitude,String entryType) {
         this.longitude = longitude;
         this.latitude = latitude;
+        this.longitudeValue = parseLongitude(longitude);
+        this.latitudeValue = parseLatitude(latitude);
         characters = new ArrayList<>();
         if(entryType.equals("trespassing")) {
             illegalEntry = true;
@@ -71,57 +78,248 @@ public class Location {
     }
 
     /**
-     * Adds a character to this location
+     * Adds a character to this location, the character is only added if all of its characteristics are valid
+     * Invalid characteristics are reported with a status code rather than an exception, so dirty files import quickly
      * @param rawCharacterString   The raw string from the scenarios.csv file to initialise a character
-     * @throws NumberFormatException    thrown when a string cannot be parsed to an integer (namely the age of the character)
-     * @throws InvalidCharacteristicException   thrown when atleast one of the characteristics of the character is not suitable
+     * @return LivingBeing.VALID, INVALID_NUMBER_FORMAT when the age is not a whole number, 
+     *          or the column number of the first characteristic that is not suitable
      */
-    public void addCharacterToLocation(String[] rawCharacterString) throws NumberFormatException, InvalidCharacteristicException {
+    public int addCharacterToLocation(String[] rawCharacterString) {
         String gender = rawCharacterString[1];
-        int age = Integer.parseInt(rawCharacterString[2]);
+        long age = parseAge(rawCharacterString[2]);
+        if (age == Long.MIN_VALUE) {
+            return INVALID_NUMBER_FORMAT;
+        }
         String bodyType = rawCharacterString[3];
+        LivingBeing character = null;
+        int status = LivingBeing.VALID;
         if (rawCharacterString[0].equals("human")) {
             //Create a human character
             String profession = rawCharacterString[4];
-            boolean pregnant;
-            if (rawCharacterString[5].toLowerCase().equals("true") || rawCharacterString[5].toLowerCase().equals("false")) {
-                pregnant = Boolean.parseBoolean(rawCharacterString[5]);
-            } else {
-                throw new InvalidCharacteristicException(5);
+            if (!isBoolean(rawCharacterString[5])) {
+                return PREGNANT;
+            }
+            boolean pregnant = Boolean.parseBoolean(rawCharacterString[5]);
+            status = Human.validate(gender, (int) age, bodyType, profession, pregnant);
+            if (status == LivingBeing.VALID) {
+                character = Human.createValidated(gender, (int) age, bodyType, profession, pregnant);
             }
-            characters.add(new Human(gender, age, bodyType, profession, pregnant));
         } else if (rawCharacterString[0].equals("animal")) {
             //Create an animal character
             String species = rawCharacterString[6];
-            boolean isPet;
-            if (rawCharacterString[7].toLowerCase().equals("true") || rawCharacterString[7].toLowerCase().equals("false")) {
-                isPet = Boolean.parseBoolean(rawCharacterString[7]);
-            } else {
-                throw new InvalidCharacteristicException(7);
+            if (!isBoolean(rawCharacterString[7])) {
+                return IS_PET;
+            }
+            boolean isPet = Boolean.parseBoolean(rawCharacterString[7]);
+            status = Animal.validate(gender, (int) age, bodyType, species, isPet);
+            if (status == LivingBeing.VALID) {
+                character = Animal.createValidated(gender, (int) age, bodyType, species, isPet);
             }
-            characters.add(new Animal(gender, age, bodyType, species, isPet));
         } else {
             //Do Nothing
             //There is an error as neither human nor animal
             //Skips the line provided
         }
+        if (character != null) {
+            characters.add(character);
+        }
+        return status;
+    }
+
+    /**
+     * Adds an already constructed character to this location
+     * @param character the character to add
+     */
+    public void addCharacterToLocation(LivingBeing character) {
+        characters.add(character);
+    }
+
+    /**
+     * Parses an age the same way as Integer.parseInt, without throwing an exception for an invalid number
+     * @param ageString the age as written in the scenarios file
+     * @return the age, or Long.MIN_VALUE if it is not a whole number that fits in an int
+     */
+    private static long parseAge(String ageString) {
+        int length = ageString.length();
+        if (length == 0) {
+            return Long.MIN_VALUE;
+        }
+        int position = 0;
+        boolean negative = false;
+        if (ageString.charAt(0) == '-' || ageString.charAt(0) == '+') {
+            negative = ageString.charAt(0) == '-';
+            position++;
+            if (length == 1) {
+                return Long.MIN_VALUE;
+            }
+        }
+        long age = 0;
+        for (; position < length; position++) {
+            int digit = Character.digit(ageString.charAt(position), 10);
+            if (digit < 0) {
+                return Long.MIN_VALUE;
+            }
+            age = age * 10 + digit;
+            if (age > (long) Integer.MAX_VALUE + 1) {
+                return Long.MIN_VALUE;
+            }
+        }
+        age = negative ? -age : age;
+        if (age > Integer.MAX_VALUE) {
+            return Long.MIN_VALUE;
+        }
+        return age;
+    }
+
+    /**
+     * @param value a value from the scenarios file
+     * @return true if the value is true or false, ignoring case
+     */
+    private static boolean isBoolean(String value) {
+        return value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false");
     }
 
     /**
      * @return the coordinates of this location as a string
      */
     public String getCoordinatesToString() {
-        return latitude + ", " + longitude;
+        return getLatitude() + ", " + getLongitude();
     }
 
     public String getLongitude() {
+        if (longitude == null) {
+            longitude = formatCoordinate(longitudeValue, 'E', 'W');
+        }
         return longitude;
     }
 
     public String getLatitude() {
+        if (latitude == null) {
+            latitude = formatCoordinate(latitudeValue, 'N', 'S');
+        }
         return latitude;
     }
 
+    /**
+     * @return the longitude as a fixed point number (east is positive), or UNKNOWN_COORDINATE
+     */
+    public int getLongitudeValue() {
+        return longitudeValue;
+    }
+
+    /**
+     * @return the latitude as a fixed point number (north is positive), or UNKNOWN_COORDINATE
+     */
+    public int getLatitudeValue() {
+        return latitudeValue;
+    }
+
+    /**
+     * @param latitude a latitude as written in the scenarios file, e.g. 13.7154 N
+     * @return the latitude as a fixed point number (north is positive), or UNKNOWN_COORDINATE if it cannot be parsed
+     */
+    public static int parseLatitude(String latitude) {
+        return parseCoordinate(latitude, 'N', 'S');
+    }
+
+    /**
+     * @param longitude a longitude as written in the scenarios file, e.g. 150.9094 W
+     * @return the longitude as a fixed point number (east is positive), or UNKNOWN_COORDINATE if it cannot be parsed
+     */
+    public static int parseLongitude(String longitude) {
+        return parseCoordinate(longitude, 'E', 'W');
+    }
+
+    /**
+     * Writes a fixed point coordinate the way coordinates are written in the scenarios file, e.g. 13.7154 N
+     * @param value the fixed point coordinate
+     * @param positive the hemisphere of positive coordinates
+     * @param negative the hemisphere of negative coordinates
+     * @return the coordinate
+     */
+    public static String formatCoordinate(int value, char positive, char negative) {
+        if (value == UNKNOWN_COORDINATE) {
+            return "unknown";
+        }
+        int magnitude = Math.abs(value);
+        StringBuilder coordinate = new StringBuilder(16).append(magnitude / COORDINATE_SCALE).append('.');
+        String decimals = Integer.toString(magnitude % COORDINATE_SCALE + COORDINATE_SCALE);
+        return coordinate.append(decimals, 1, decimals.length()).append(' ').append(value < 0 ? negative : positive).toString();
+    }
+
+    /**
+     * Parses a coordinate such as 13.7154 N without allocating, rounding to 4 decimals
+     * A coordinate without a hemisphere is positive, a negative coordinate in the negative hemisphere is positive (e.g. -37.0 W)
+     * @param coordinate the coordinate
+     * @param positive the hemisphere of positive coordinates
+     * @param negative the hemisphere of negative coordinates
+     * @return the fixed point coordinate, or UNKNOWN_COORDINATE if it cannot be parsed
+     */
+    private static int parseCoordinate(String coordinate, char positive, char negative) {
+        int end = coordinate.length();
+        while (end > 0 && coordinate.charAt(end - 1) == ' ') {
+            end--;
+        }
+        int sign = 1;
+        if (end > 0 && Character.toUpperCase(coordinate.charAt(end - 1)) == negative) {
+            sign = -1;
+            end--;
+        } else if (end > 0 && Character.toUpperCase(coordinate.charAt(end - 1)) == positive) {
+            end--;
+        }
+        int position = 0;
+        while (position < end && coordinate.charAt(position) == ' ') {
+            position++;
+        }
+        while (end > position && coordinate.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (position < end && (coordinate.charAt(position) == '-' || coordinate.charAt(position) == '+')) {
+            sign = (coordinate.charAt(position) == '-') ? -sign : sign;
+            position++;
+        }
+        long value = 0;
+        int digits = 0;
+        int decimals = -1;          //Number of decimals read, -1 before the decimal point
+        boolean roundUp = false;
+        for (; position < end; position++) {
+            char character = coordinate.charAt(position);
+            if (character == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (character >= '0' && character <= '9') {
+                digits++;
+                if (decimals == COORDINATE_DECIMALS) {
+                    //Only the first dropped decimal decides the rounding
+                    roundUp = character >= '5';
+                    decimals++;
+                } else if (decimals < COORDINATE_DECIMALS) {
+                    value = value * 10 + (character - '0');
+                    decimals = (decimals < 0) ? decimals : decimals + 1;
+                    //The value only grows once scaled, so a value already too large can stop early (before a long could overflow)
+                    if (value > (long) MAX_DEGREES * COORDINATE_SCALE) {
+                        return UNKNOWN_COORDINATE;
+                    }
+                }
+            } else {
+                return UNKNOWN_COORDINATE;
+            }
+        }
+        if (digits == 0) {
+            return UNKNOWN_COORDINATE;
+        }
+        for (int i = Math.max(decimals, 0); i < COORDINATE_DECIMALS; i++) {
+            value *= 10;
+        }
+        if (roundUp) {
+            value++;
+        }
+        //Checked once scaled, whole numbers such as 123456789 are only too large after they are scaled
+        if (value > (long) MAX_DEGREES * COORDINATE_SCALE) {
+            return UNKNOWN_COORDINATE;
+        }
+        return (int) (sign * value);
+    }
+
     /**
      * @return the entry status of the characters as a string
      */
@@ -159,10 +357,19 @@ public class Location {
      * @return the string representation of all the characters
      */
     public String getCharactersToString() {
-        String msg = characters.size() + " Characters: \n";
+        StringBuilder msg = new StringBuilder();
+        appendCharacters(msg);
+        return msg.toString();
+    }
+
+    /**
+     * Appends the string representation of all the characters to a report
+     * @param msg the report being built
+     */
+    public void appendCharacters(StringBuilder msg) {
+        msg.append(characters.size()).append(" Characters: \n");
         for (LivingBeing character : characters) {
-            msg += "- " +  character.toString() + "\n";
+            msg.append("- ").append(character.toString()).append('\n');
         }
-        return msg;
     }
 }
\ No newline at end of file
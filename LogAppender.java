@@ -0,0 +1,170 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends batches to a log file that other RescueBot processes may be appending to at the same time
+ * Every append takes an exclusive lock on the log file, then checks whether the file is new and writes the header
+ * (or the start of a compressed log file) and the whole batch before releasing it. Batches of different processes
+ * therefore never interleave and the header is written exactly once.
+ * Batches are encoded and compressed before the lock is taken, so the lock is only held for the write itself
+ * @author Joshia Nambi
+ */
+public class LogAppender {
+
+    //A file lock is held by the whole process, two threads of the same process have to take turns before locking
+    private final static Object PROCESS_LOCK = new Object();
+    private final static int MAX_BLOCK_LENGTH = 1 << 22;     //A batch file appended to a compressed log file is split into blocks of about this many characters
+
+    /**
+     * Appends a batch to the log file as one unit, generating the log file first if it doesn't exist
+     * @param logFile the log file
+     * @param header the first line of a new log file
+     * @param batch the formatted batch (one or more whole batches)
+     * @throws IOException thrown when the log file cannot be locked or written
+     */
+    public static void appendBatch(File logFile, String header, String batch) throws IOException {
+        //Guess the format of the log file, the guess is checked once the lock is held
+        boolean newFile = !(logFile.length() > 0);
+        boolean compressed = CompressedLog.shouldCompress(logFile);
+        while (true) {
+            byte[] encodedBatch;
+            if (compressed) {
+                //The header of a new compressed log file goes in its first block
+                encodedBatch = CompressedLog.compressBlock(newFile ? header + System.lineSeparator() + batch : batch);
+            } else {
+                encodedBatch = batch.getBytes(CompressedLog.LOG_CHARSET);
+            }
+            synchronized (PROCESS_LOCK) {
+                try (FileChannel channel = openLogFile(logFile)) {
+                    FileLock lock = channel.lock();
+                    try {
+                        long size = channel.size();
+                        boolean compressedFile = CompressedLog.shouldCompress(channel);
+                        if (compressedFile == compressed && (!compressed || newFile == (size == 0))) {
+                            if (size == 0) {
+                                size = write(channel, size, compressed ? CompressedLog.getMagic() : encodeHeader(header));
+                            }
+                            write(channel, size, encodedBatch);
+                            return;
+                        }
+                        //Another process created the log file since the guess, encode the batch again for the file as it is now
+                        newFile = (size == 0);
+                        compressed = compressedFile;
+                    } finally {
+                        lock.release();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends a batch that was written to a file of its own (e.g. a batch too large to keep in memory) to the log file as one unit
+     * The batch is streamed into the log file, so it is never held in memory as a whole
+     * @param logFile the log file
+     * @param header the first line of a new log file
+     * @param batchFile the file holding the formatted batch as plain text
+     * @throws IOException thrown when the log file cannot be locked or written, or the batch file cannot be read
+     */
+    public static void appendBatchFile(File logFile, String header, Path batchFile) throws IOException {
+        synchronized (PROCESS_LOCK) {
+            try (FileChannel channel = openLogFile(logFile); FileChannel batchChannel = FileChannel.open(batchFile, StandardOpenOption.READ)) {
+                FileLock lock = channel.lock();
+                try {
+                    long size = channel.size();
+                    if (CompressedLog.shouldCompress(channel)) {
+                        //The header of a new compressed log file goes in its first block
+                        String firstLines = "";
+                        if (size == 0) {
+                            size = write(channel, size, CompressedLog.getMagic());
+                            firstLines = header + System.lineSeparator();
+                        }
+                        writeBlocks(channel, size, firstLines, batchFile);
+                        return;
+                    }
+                    if (size == 0) {
+                        size = write(channel, size, encodeHeader(header));
+                    }
+                    long batchSize = batchChannel.size();
+                    long transferred = 0;
+                    while (transferred < batchSize) {
+                        transferred += channel.transferFrom(batchChannel, size + transferred, batchSize - transferred);
+                    }
+                } finally {
+                    lock.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Describes why a log file could not be written, for the error printed to the user
+     * @param e the exception thrown while appending
+     * @return the description
+     */
+    public static String describeFailure(IOException e) {
+        if (e instanceof FileNotFoundException) {
+            return "Target directory does not exist.";
+        }
+        return e.getMessage();
+    }
+
+    /**
+     * Writes a batch file to a compressed log file as several blocks, as every block has to end on a '-----' line.
+     * The batch is cut before a 'scenario:' line once a block is long enough, and every part is written as a whole batch
+     * of its own by closing it with '-----' and starting the next part with the decisionMaker line of the batch
+     * @param channel the locked log file
+     * @param position the end of the log file
+     * @param firstLines text that goes before the batch in the first block
+     * @param batchFile the file holding the formatted batch as plain text
+     */
+    private static void writeBlocks(FileChannel channel, long position, String firstLines, Path batchFile) throws IOException {
+        String newLine = System.lineSeparator();
+        try (BufferedReader batchReader = Files.newBufferedReader(batchFile, CompressedLog.LOG_CHARSET)) {
+            String decisionMakerLine = batchReader.readLine();
+            if (decisionMakerLine == null) {
+                return;
+            }
+            StringBuilder block = new StringBuilder(firstLines).append(decisionMakerLine).append(newLine);
+            String line;
+            while ((line = batchReader.readLine()) != null) {
+                if (line.startsWith("scenario:") && block.length() >= MAX_BLOCK_LENGTH) {
+                    block.append("-----").append(newLine);
+                    position = write(channel, position, CompressedLog.compressBlock(block.toString()));
+                    block.setLength(0);
+                    block.append(decisionMakerLine).append(newLine);
+                }
+                block.append(line).append(newLine);
+            }
+            write(channel, position, CompressedLog.compressBlock(block.toString()));
+        }
+    }
+
+    private static FileChannel openLogFile(File logFile) throws IOException {
+        return FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static byte[] encodeHeader(String header) {
+        return (header + System.lineSeparator()).getBytes(CompressedLog.LOG_CHARSET);
+    }
+
+    /**
+     * Writes all of the bytes at a position of the log file
+     * @return the position after the bytes
+     */
+    private static long write(FileChannel channel, long position, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        return position;
+    }
+}
@@ -0,0 +1,113 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Follows a log file that another process is appending to, handing out only the batches that have been completely written
+ * The position of the first unread byte is remembered, so each read only costs as much as the text appended since the last read.
+ * Plain log files are cut after the last '-----' line, compressed log files after the last complete block (which ends on a batch)
+ * @author Joshia Nambi
+ */
+public class LogTail {
+
+    private final static int MAX_BYTES_PER_READ = 8 << 20;     //Reading is spread over several calls when a lot is appended at once
+    private final static byte[] BATCH_END = "-----\n".getBytes(CompressedLog.LOG_CHARSET);
+
+    private File logFile;
+    private long offset = 0;
+
+    /**
+     * @param logFile the log file to follow, which doesn't need to exist yet
+     */
+    public LogTail(File logFile) {
+        this.logFile = logFile;
+    }
+
+    /**
+     * Reads the complete batches appended since the last call
+     * @return the text of the complete batches (empty if there are none yet), or null if the log file was replaced or truncated,
+     *          in which case the next call starts again from the beginning of the file
+     * @throws IOException thrown when the log file cannot be read
+     */
+    public String readCompleteBatches() throws IOException {
+        if (!logFile.exists()) {
+            return offset == 0 ? "" : restart();
+        }
+        try (RandomAccessFile reader = new RandomAccessFile(logFile, "r")) {
+            long length = reader.length();
+            if (length < offset) {
+                return restart();
+            }
+            if (length == offset) {
+                return "";
+            }
+            if (CompressedLog.isCompressed(logFile)) {
+                ByteArrayOutputStream text = new ByteArrayOutputStream();
+                offset = CompressedLog.readCompleteBlocks(reader, offset, text, MAX_BYTES_PER_READ);
+                return text.toString(CompressedLog.LOG_CHARSET);
+            }
+            byte[] appended = new byte[(int) Math.min(length - offset, MAX_BYTES_PER_READ)];
+            reader.seek(offset);
+            reader.readFully(appended);
+            int end = findEndOfLastBatch(appended);
+            if (end == 0 && appended.length == MAX_BYTES_PER_READ) {
+                //A single batch larger than a read, hand it out once it is complete
+                return readCompleteBatches(length);
+            }
+            offset += end;
+            return new String(appended, 0, end, CompressedLog.LOG_CHARSET);
+        }
+    }
+
+    /**
+     * Reads past a batch that is larger than a single read, once its end has been written
+     * @param length the length of the log file
+     * @return the text of the batch, or an empty string if it is still being written
+     */
+    private String readCompleteBatches(long length) throws IOException {
+        byte[] appended = new byte[(int) Math.min(length - offset, Integer.MAX_VALUE - 8)];
+        try (RandomAccessFile reader = new RandomAccessFile(logFile, "r")) {
+            reader.seek(offset);
+            reader.readFully(appended);
+        }
+        int end = findEndOfLastBatch(appended);
+        offset += end;
+        return new String(appended, 0, end, CompressedLog.LOG_CHARSET);
+    }
+
+    private String restart() {
+        offset = 0;
+        return null;
+    }
+
+    /**
+     * @param text text of the log file
+     * @return the position just after the last '-----' line in the text, or 0 if the text holds no complete batch
+     */
+    private static int findEndOfLastBatch(byte[] text) {
+        for (int end = text.length; end >= BATCH_END.length; end--) {
+            if (text[end - 1] != '\n') {
+                continue;
+            }
+            int start = end - BATCH_END.length;
+            //The line may also end with a carriage return
+            if (text[end - 2] == '\r') {
+                start--;
+            }
+            if (start >= 0 && (start == 0 || text[start - 1] == '\n') && isBatchEnd(text, start)) {
+                return end;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean isBatchEnd(byte[] text, int start) {
+        for (int i = 0; i < BATCH_END.length - 1; i++) {
+            if (text[start + i] != '-') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,188 @@
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A write-behind logger that appends formatted batches to the logfile on a background thread,
+ * so that the user never waits on the disk between scenarios
+ * @author Joshia Nambi
+ */
+public class LogWriter {
+
+    private final static int QUEUE_CAPACITY = 16;     //Number of batches that can be waiting before submit blocks
+    private final static int MAX_JOINED_LENGTH = 1 << 22;     //Queued batches are joined into one append up to about this many characters
+
+    private BlockingQueue<LogEntry> pendingEntries;
+    private Thread writerThread;
+    private volatile boolean writeFailed = false;    //Set by the writer thread when the logfile could not be written
+    private volatile String failure;                 //Why the logfile could not be written
+    private boolean closed = false;                  //Set once the writer thread has been asked to stop
+
+    /**
+     * A batch waiting to be written, a task to run once the batches before it are written, or a marker used to flush and stop the writer thread
+     */
+    private static class LogEntry {
+        private String logFilePath;
+        private String batch;
+        private Runnable task;
+        private CountDownLatch written;
+        private boolean lastEntry;
+
+        private LogEntry(String logFilePath, String batch, Runnable task, CountDownLatch written, boolean lastEntry) {
+            this.logFilePath = logFilePath;
+            this.batch = batch;
+            this.task = task;
+            this.written = written;
+            this.lastEntry = lastEntry;
+        }
+    }
+
+    /**
+     * Starts the background writer thread and registers a shutdown hook that drains any pending batches
+     */
+    public LogWriter() {
+        pendingEntries = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        writerThread = new Thread(this::writePendingEntries, "rescuebot-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::drain));
+    }
+
+    /**
+     * Hands a formatted batch to the writer thread
+     * Blocks when the queue is full, so a slow disk applies backpressure instead of growing the queue
+     * @param logFilePath logfile to save to
+     * @param batch the formatted batch
+     */
+    public void submit(String logFilePath, String batch) {
+        checkForWriteFailure();
+        enqueue(new LogEntry(logFilePath, batch, null, null, false));
+    }
+
+    /**
+     * Runs a task on the writer thread once every batch submitted so far has been written, without waiting for it
+     * The task is not run if a batch could not be written
+     * @param task the task, e.g. saving how far the written batches got
+     */
+    public void afterWritten(Runnable task) {
+        checkForWriteFailure();
+        enqueue(new LogEntry(null, null, task, null, false));
+    }
+
+    /**
+     * Waits until every batch submitted so far has been written to the logfile
+     */
+    public void flush() {
+        CountDownLatch written = new CountDownLatch(1);
+        enqueue(new LogEntry(null, null, null, written, false));
+        awaitUninterruptibly(written);
+        checkForWriteFailure();
+    }
+
+    /**
+     * Writes every pending batch and stops the writer thread
+     * Called on quit, before the program exits
+     */
+    public void close() {
+        drain();
+        checkForWriteFailure();
+    }
+
+    /**
+     * Drains the queue and stops the writer thread without exiting the program (safe to call from a shutdown hook)
+     */
+    private synchronized void drain() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        CountDownLatch written = new CountDownLatch(1);
+        enqueue(new LogEntry(null, null, null, written, true));
+        awaitUninterruptibly(written);
+    }
+
+    /**
+     * The loop run by the writer thread, appending each batch in the order it was submitted
+     */
+    private void writePendingEntries() {
+        while (true) {
+            LogEntry entry;
+            try {
+                entry = pendingEntries.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            try {
+                if (entry.batch != null && !writeFailed) {
+                    StatisticsGenerator.appendToLogFile(entry.logFilePath, takeFollowingBatches(entry));
+                } else if (entry.task != null && !writeFailed) {
+                    entry.task.run();
+                }
+            } catch (Exception e) {
+                //The thread keeps taking entries after a failure, so flush, close and submit never wait on it forever
+                failure = (e instanceof IOException) ? LogAppender.describeFailure((IOException) e) : e.toString();
+                writeFailed = true;
+            } finally {
+                if (entry.written != null) {
+                    entry.written.countDown();
+                }
+            }
+            if (entry.lastEntry) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Joins a batch with the batches queued right after it for the same logfile, so they are appended (and the logfile locked) once
+     * @param entry the batch that was taken from the queue
+     * @return the text of the batch and the batches that follow it
+     */
+    private String takeFollowingBatches(LogEntry entry) {
+        LogEntry next = pendingEntries.peek();
+        if (next == null || next.batch == null || !next.logFilePath.equals(entry.logFilePath)) {
+            return entry.batch;
+        }
+        StringBuilder batches = new StringBuilder(entry.batch);
+        while (next != null && next.batch != null && next.logFilePath.equals(entry.logFilePath) && batches.length() < MAX_JOINED_LENGTH) {
+            batches.append(pendingEntries.poll().batch);
+            next = pendingEntries.peek();
+        }
+        return batches.toString();
+    }
+
+    /**
+     * Terminates the program in the same way a synchronous write would have if the writer thread failed
+     */
+    private void checkForWriteFailure() {
+        if (writeFailed) {
+            System.out.println("ERROR: could not print results. " + failure);
+            System.exit(1);
+        }
+    }
+
+    private void enqueue(LogEntry entry) {
+        boolean queued = false;
+        while (!queued) {
+            try {
+                pendingEntries.put(entry);
+                queued = true;
+            } catch (InterruptedException e) {
+                //Retry, the entry must not be lost
+            }
+        }
+    }
+
+    private void awaitUninterruptibly(CountDownLatch latch) {
+        boolean finished = false;
+        while (!finished) {
+            try {
+                latch.await();
+                finished = true;
+            } catch (InterruptedException e) {
+                //Keep waiting for the writer thread
+            }
+        }
+    }
+}
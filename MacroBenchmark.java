@@ -0,0 +1,306 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import lib.exceptions.EmptyFileException;
+
+/**
+ * Times the whole pipeline on generated scenario files of a few fixed sizes: importing the file, running the decision algorithm
+ * and its statistics over every scenario, saving the log file and reading the log file back for an audit.
+ * Each phase records its characters per second, the peak resident memory of the process and the time spent in garbage collection.
+ * The results are compared to a JSON baseline file so regressions stand out, and written to a JSON results file of their own.
+ * The baseline is only replaced when asked to, and then only the sizes and phases that were run are replaced in it
+ * @author Joshia Nambi
+ */
+public class MacroBenchmark {
+
+    private final static long[] DEFAULT_SIZES = {10000, 1000000, 10000000};
+    private final static long DEFAULT_SEED = 1;
+    private final static String DEFAULT_BASELINE = "benchmark-baseline.json";
+    private final static String DEFAULT_RESULTS = "benchmark-results.json";
+    private final static double REGRESSION_THRESHOLD = 0.10;       //A phase this much slower than the baseline is reported as a regression
+    private final static long MIN_COMPARED_MILLIS = 100;           //Shorter phases vary too much between runs to report regressions
+    private final static Pattern RESULT_PATTERN = Pattern.compile(
+            "\\{\"characters\": (\\d+), \"phase\": \"(\\w+)\", \"millis\": (\\d+), \"charactersPerSecond\": ([\\d.]+)[^}]*\\}");
+
+    private LinkedHashMap<String, String> results = new LinkedHashMap<>();          //The result of each size and phase of this run
+    private LinkedHashMap<String, String> baselineResults = new LinkedHashMap<>();  //The result of each size and phase in the baseline
+    private HashMap<String, Double> baselineRates = new HashMap<>();    //Characters per second of each size and phase in the baseline
+    private long phaseStart;
+    private long phaseGcMillis;
+    private long phaseGcCount;
+
+    /**
+     * Runs the benchmark
+     * @param args --sizes (comma separated numbers of characters), --seed, --baseline (path of the JSON file), --results (path of the JSON file),
+     *             --update-baseline and --dir (where corpora are written)
+     */
+    public static void main(String[] args) {
+        long[] sizes = DEFAULT_SIZES;
+        long seed = DEFAULT_SEED;
+        String baselinePath = DEFAULT_BASELINE;
+        String resultsPath = DEFAULT_RESULTS;
+        boolean updateBaseline = false;
+        File directory = new File(System.getProperty("java.io.tmpdir"));
+        for (int i = 0; i < args.length; i++) {
+            //The only argument without a value
+            if (args[i].equals("--update-baseline")) {
+                updateBaseline = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                printHelp();
+            }
+            try {
+                switch (args[i]) {
+                    case "--sizes":
+                        String[] sizeArguments = args[++i].split(",");
+                        sizes = new long[sizeArguments.length];
+                        for (int j = 0; j < sizes.length; j++) {
+                            sizes[j] = Long.parseLong(sizeArguments[j].trim());
+                        }
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(args[++i]);
+                        break;
+                    case "--baseline":
+                        baselinePath = args[++i];
+                        break;
+                    case "--results":
+                        resultsPath = args[++i];
+                        break;
+                    case "--dir":
+                        directory = new File(args[++i]);
+                        break;
+                    default:
+                        printHelp();
+                        break;
+                }
+            } catch (NumberFormatException e) {
+                printHelp();
+            }
+        }
+
+        MacroBenchmark benchmark = new MacroBenchmark();
+        benchmark.readBaseline(baselinePath);
+        for (long size : sizes) {
+            benchmark.runCorpus(directory, size, seed);
+        }
+        benchmark.writeResults(resultsPath, benchmark.results, seed);
+        if (updateBaseline) {
+            //Sizes and phases that weren't run keep their results from the baseline
+            LinkedHashMap<String, String> mergedResults = new LinkedHashMap<>(benchmark.baselineResults);
+            mergedResults.putAll(benchmark.results);
+            benchmark.writeResults(baselinePath, mergedResults, seed);
+        }
+    }
+
+    /**
+     * Generates a scenario file and times every phase of the pipeline on it
+     * @param directory where the scenario and log files are written, they are deleted afterwards
+     * @param characters the number of characters in the scenario file
+     * @param seed the seed of the scenario file
+     */
+    private void runCorpus(File directory, long characters, long seed) {
+        File scenariosFile = new File(directory, "rescuebot-benchmark-" + characters + ".csv");
+        File logFile = new File(directory, "rescuebot-benchmark-" + characters + ".log");
+        try {
+            new CorpusGenerator(characters).generate(scenariosFile, seed);
+        } catch (IOException e) {
+            System.out.println("ERROR: could not write scenarios file. " + e.getMessage());
+            System.exit(1);
+        }
+        logFile.delete();
+        System.out.println("======================================");
+        System.out.println("# Benchmark: " + characters + " characters (" + scenariosFile.length() / 1000000 + " MB)");
+        System.out.println("======================================");
+        resetPeakMemory();
+
+        //Import the scenarios file the same way as the menu, without a snapshot
+        startPhase();
+        ArrayList<Scenario> scenarios = new ArrayList<>();
+        try {
+            new ScenarioImporter(scenarios).importFile(scenariosFile);
+        } catch (FileNotFoundException e) {
+            System.out.println("java.io.FileNotFoundException: could not find scenarios file.");
+            System.exit(1);
+        }
+        endPhase(characters, "import");
+
+        //Decide every scenario and gather its statistics, as a run does
+        startPhase();
+        int[] decisions = RescueBot.decideAll(scenarios, RescueBot.getActiveProfile());
+        StatisticsGenerator statGenerator = new StatisticsGenerator();
+        ArrayList<Integer> savedLocations = new ArrayList<>(decisions.length);
+        for (int i = 0; i < decisions.length; i++) {
+            statGenerator.parseScenarioForStatistics(scenarios.get(i), decisions[i]);
+            savedLocations.add(decisions[i]);
+        }
+        endPhase(characters, "run");
+
+        startPhase();
+        statGenerator.saveStatisticsToLogFile(logFile.getPath(), scenarios, savedLocations, "algorithm");
+        endPhase(characters, "save");
+
+        //The scenarios are no longer needed, so reading the log file back isn't measured with them in memory
+        scenarios = null;
+        savedLocations = null;
+        startPhase();
+        try {
+            new Auditor().readLogFile(logFile.getPath());
+        } catch (FileNotFoundException | EmptyFileException e) {
+            System.out.println("ERROR: could not read log file.");
+            System.exit(1);
+        }
+        endPhase(characters, "audit");
+
+        scenariosFile.delete();
+        ScenarioSnapshot.getSnapshotFile(scenariosFile).delete();
+        logFile.delete();
+    }
+
+    private void startPhase() {
+        phaseGcMillis = getGcMillis();
+        phaseGcCount = getGcCount();
+        phaseStart = System.nanoTime();
+    }
+
+    /**
+     * Records the result of a phase and prints it, next to the baseline if the baseline has the same phase
+     * @param characters the number of characters in the scenario file
+     * @param phase the name of the phase
+     */
+    private void endPhase(long characters, String phase) {
+        long millis = Math.max(1, (System.nanoTime() - phaseStart) / 1000000);
+        long gcMillis = getGcMillis() - phaseGcMillis;
+        long gcCount = getGcCount() - phaseGcCount;
+        double charactersPerSecond = characters * 1000.0 / millis;
+        long peakMemory = getPeakMemoryKilobytes();
+        results.put(characters + " " + phase, String.format(Locale.ROOT, "{\"characters\": %d, \"phase\": \"%s\", \"millis\": %d, \"charactersPerSecond\": %.1f, "
+                + "\"peakRssKb\": %d, \"gcMillis\": %d, \"gcCount\": %d}", characters, phase, millis, charactersPerSecond, peakMemory, gcMillis, gcCount));
+        System.out.printf("%s: %d ms, %.0f characters/s, peak RSS %d MB, GC %d ms in %d collections", phase, millis, charactersPerSecond,
+                peakMemory / 1024, gcMillis, gcCount);
+        Double baselineRate = baselineRates.get(characters + " " + phase);
+        if (baselineRate != null) {
+            double change = charactersPerSecond / baselineRate - 1;
+            System.out.printf(" (%+.1f%% vs baseline%s)", change * 100, change < -REGRESSION_THRESHOLD && millis >= MIN_COMPARED_MILLIS ? ", REGRESSION" : "");
+        }
+        System.out.println();
+    }
+
+    /**
+     * Reads the characters per second of every phase in the baseline file, if there is one
+     * @param baselinePath the path of the baseline file
+     */
+    private void readBaseline(String baselinePath) {
+        Path baseline = Paths.get(baselinePath);
+        if (!Files.exists(baseline)) {
+            return;
+        }
+        try {
+            Matcher matcher = RESULT_PATTERN.matcher(new String(Files.readAllBytes(baseline)));
+            while (matcher.find()) {
+                baselineRates.put(matcher.group(1) + " " + matcher.group(2), Double.parseDouble(matcher.group(4)));
+                baselineResults.put(matcher.group(1) + " " + matcher.group(2), matcher.group());
+            }
+        } catch (IOException e) {
+            System.out.println("WARNING: could not read baseline file, results are not compared.");
+        }
+    }
+
+    /**
+     * Writes results to a JSON file, replacing the file
+     * @param path the path of the file
+     * @param entries the result of each size and phase
+     * @param seed the seed the scenario files were generated with
+     */
+    private void writeResults(String path, LinkedHashMap<String, String> entries, long seed) {
+        try (PrintWriter resultsWriter = new PrintWriter(path)) {
+            resultsWriter.println("{");
+            resultsWriter.println("  \"seed\": " + seed + ",");
+            resultsWriter.println("  \"javaVersion\": \"" + System.getProperty("java.version") + "\",");
+            resultsWriter.println("  \"processors\": " + Runtime.getRuntime().availableProcessors() + ",");
+            resultsWriter.println("  \"maxHeapMb\": " + Runtime.getRuntime().maxMemory() / (1024 * 1024) + ",");
+            resultsWriter.println("  \"results\": [");
+            int written = 0;
+            for (String entry : entries.values()) {
+                resultsWriter.println("    " + entry + (++written < entries.size() ? "," : ""));
+            }
+            resultsWriter.println("  ]");
+            resultsWriter.println("}");
+        } catch (FileNotFoundException e) {
+            System.out.println("ERROR: could not write " + path + ". " + e.getMessage());
+            System.exit(1);
+        }
+        System.out.println("Saved the results to " + path);
+    }
+
+    private static long getGcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+
+    private static long getGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     * @return the peak resident memory of the process (VmHWM) in kilobytes, or -1 where /proc is not available
+     */
+    private static long getPeakMemoryKilobytes() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            //Handled below
+        }
+        return -1;
+    }
+
+    /**
+     * Resets the peak resident memory of the process, so each scenario file reports its own peak (Linux only)
+     */
+    private static void resetPeakMemory() {
+        System.gc();
+        try (PrintWriter clearRefs = new PrintWriter("/proc/self/clear_refs")) {
+            clearRefs.print("5");
+        } catch (FileNotFoundException e) {
+            //The peak then covers every scenario file so far
+        }
+    }
+
+    private static void printHelp() {
+        System.out.println("RescueBot Macro Benchmark\n");
+        System.out.println("Usage: java MacroBenchmark [arguments]\n");
+        System.out.println("Arguments:");
+        System.out.println("--sizes\t\tOptional: comma separated numbers of characters of the generated scenario files (default: 10000,1000000,10000000)");
+        System.out.println("--seed\t\tOptional: seed of the generated scenario files (default: 1)");
+        System.out.println("--baseline\tOptional: JSON file the results are compared to (default: benchmark-baseline.json)");
+        System.out.println("--results\tOptional: JSON file the results are saved in (default: benchmark-results.json)");
+        System.out.println("--update-baseline\tOptional: also save the results in the baseline, replacing only the sizes and phases that were run");
+        System.out.println("--dir\t\tOptional: directory the scenario and log files are written to (default: the temporary directory)");
+        System.exit(1);
+    }
+}
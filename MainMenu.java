@@ -3,9 +3,12 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import lib.exceptions.*;
 
@@ -18,9 +21,20 @@ public class MainMenu {
 
     final private static String WELCOME_FILE = "welcome.ascii"; 
     private ArrayList<Scenario> scenarios;          //Stores all the scenarios
+    private File scenariosFile;                     //The scenarios file provided to the program, imported the first time its scenarios are needed
     private Scanner inputScanner;                   //Scanner to capture data from the console, as the user interacts with the program
-    private String logFilePath = "rescuebot.log";   //The path to the logfile, the default is already provided and is overwritten when another is provided
+    final static String DEFAULT_LOG_FILE = "rescuebot.log";
+
+    private String logFilePath = DEFAULT_LOG_FILE;   //The path to the logfile, the default is already provided and is overwritten when another is provided
     private boolean importedScenarios = false;      //Tracks whether scenarios were provided to the program
+    private LogWriter logWriter = new LogWriter();  //Writes judged scenarios to the logfile in the background
+    private ScenarioFileWatcher scenarioWatcher;    //Collects lines appended to the scenarios file while the program runs
+    private ScenarioImporter scenarioImporter;      //Imported the scenarios file, and parses the lines appended to it
+    private ScenarioCursor scenarioCursor;          //Where judge sessions of the scenarios file resume from
+    private SpatialIndex importedLocations = new SpatialIndex();    //The locations of the imported scenarios, for nearest location lookups
+    private int[] importedLocationScenarios = new int[0];           //The scenario of each indexed location
+    private int indexedScenarioCount = 0;
+    private int indexedLastScenarioLocations = 0;                   //The indexed locations of the last indexed scenario, appended lines can add more
 
     /**
      * Contructor when no arguments are provided to the RescueBot program
@@ -37,8 +51,7 @@ public class MainMenu {
      */
     public MainMenu(File scenariosFile) {
         showWelcomeMessage();
-        scenarios = new ArrayList<Scenario>();
-        importScenarios(scenariosFile);
+        openScenariosFile(scenariosFile);
         inputScanner = new Scanner(System.in);
         showMenuOptions();
     }
@@ -50,8 +63,7 @@ public class MainMenu {
      */
     public MainMenu(File scenariosFile, String logPath) {
         showWelcomeMessage();
-        scenarios = new ArrayList<Scenario>();
-        importScenarios(scenariosFile);
+        openScenariosFile(scenariosFile);
         logFilePath = logPath;
         inputScanner = new Scanner(System.in);
         showMenuOptions();
@@ -86,149 +98,125 @@ public class MainMenu {
     }
 
     /**
-     * Reads in the scenario file that was passed to the RescueBot program and adds the predefined scenarios, locations and characters
+     * Checks the scenario file that was passed to the RescueBot program, without importing it yet
      * Recovers from basic anamalies in the data such as:
      *  > Incorrect number of columns: skips and prints error warning
      *  > Incorrect attributes of chracters: sets the corresponding attribute to a default value and prints error warning
-     * Finally prints the number of scenarions that have been imported
+     * The warnings are printed together once the whole file has been read, followed by the number of scenarions in the file.
+     * Judging streams its scenarios through the cursor, so a session that only judges never imports the whole file
      * @param scenariosFile the File to import scenarios, locations and characters from 
      */
-    private void importScenarios(File scenariosFile) {
-        // The default values for character attributes
-        final String DFLT_GENDER = "unknown";
-        final String DFLT_AGE = "0";
-        final String DFLT_BODYTYPE = "unspecified";
-        final String DFLT_PROFESSION = "none";
-        final String DFLT_PREGNANT = "false";
-        final String DFLT_ISPET = "false";
-
-        Scanner scenarioReader = null;
+    private void openScenariosFile(File scenariosFile) {
+        this.scenariosFile = scenariosFile;
+        scenarioCursor = new ScenarioCursor(scenariosFile);
+        importedScenarios = true;
+        //A matching snapshot was written from a file without warnings, so it already knows the number of scenarios
+        int scenarioCount = ScenarioSnapshot.countScenarios(scenariosFile);
+        if (scenarioCount < 0) {
+            ScenarioImporter checker = new ScenarioImporter(new ArrayList<Scenario>());
+            try {
+                scenarioCount = checker.checkFile(scenariosFile);
+            } catch (FileNotFoundException e) {
+                //Already handled in RescueBot.java, so unlikely there will be an error
+                System.out.println("java.io.FileNotFoundException: could not find scenarios file.");
+                System.exit(1);
+            }
+            checker.printWarnings();
+        }
+        System.out.println(scenarioCount + " scenarios imported.");
+    }
+
+    /**
+     * Makes sure every scenario of the scenarios file is in memory, for the menu options that use all of them
+     * The file is imported the first time, afterwards only the lines appended to it are parsed
+     */
+    private void loadScenarios() {
+        if (!importedScenarios) {
+            return;
+        }
+        if (scenarios == null) {
+            importScenarios();
+        } else {
+            mergeAppendedScenarios();
+        }
+    }
+
+    /**
+     * Reads in the scenario file that was passed to the RescueBot program and adds the predefined scenarios, locations and characters
+     * The anomalies are recovered from in the same way as when the file was checked, the warnings were already printed then
+     */
+    private void importScenarios() {
+        //Use the validated snapshot from a previous launch if the scenarios file hasn't changed since.
+        //The length is taken first, the snapshot is only used if the file still has that length when the snapshot is checked
+        long snapshotLength = scenariosFile.length();
+        ArrayList<Scenario> snapshotScenarios = ScenarioSnapshot.load(scenariosFile);
+        if (snapshotScenarios != null) {
+            scenarios = snapshotScenarios;
+            watchScenariosFile(scenariosFile, snapshotLength);
+            return;
+        }
+
+        scenarios = new ArrayList<Scenario>();
+        scenarioImporter = new ScenarioImporter(scenarios);
+        long importedLength = 0;
         try {
-            scenarioReader = new Scanner(scenariosFile);
+            importedLength = scenarioImporter.importFile(scenariosFile);
         } catch (FileNotFoundException e) {
             //Already handled in RescueBot.java, so unlikely there will be an error
             System.out.println("java.io.FileNotFoundException: could not find scenarios file.");
             System.exit(1);
         }
-
-        //Constats for Column Numbers
-        final int GENDER = 1;
-        final int AGE = 2;  //This might need to be implemented????
-        final int BODY_TYPE = 3;
-        final int PROFESSION = 4;
-        final int PREGNANT = 5;
-        final int IS_PET = 7;
-
-        int lineNumber = 0;
-        while (scenarioReader.hasNextLine()) {
-            lineNumber++;
-            String lineString = scenarioReader.nextLine();
-            int numberOfColumns = commaCounter(lineString);
-
-            boolean hasLineParsedSuccessfully = false;
-            // Converts the line to an array
-            String[] lineArray = lineString.split(",", 8);
-
-            while (!hasLineParsedSuccessfully) {
-                try {
-                    // Make sure there are 8 Columns in the row
-                    // There are 8 columns when the number of commas is equal to 7
-                    if (numberOfColumns != 7) {
-                        throw new InvalidDataFormatException();
-                    }
-                    // Skips the header line
-                    else if (lineArray[0].length() == 0) {
-                        hasLineParsedSuccessfully = true;
-                    }
-                    // Makes a new scenario object and adds it to the scenarios arraylist
-                    else if (lineArray[0].startsWith("scenario:")) {
-                        String disaster = lineArray[0].substring(9);
-                        scenarios.add(new Scenario(disaster));
-                        hasLineParsedSuccessfully = true;
-                    }
-                    // Adds a location to the previously added scenario
-                    else if (lineArray[0].startsWith("location:")) {
-                        String locData = lineArray[0].substring(9);
-                        scenarios.get(scenarios.size() - 1).addLocation(locData);
-                        hasLineParsedSuccessfully = true;
-                    }
-                    // Once all other checks are done, the characters are added to the previously added scenario (and in turn the previously added location)
-                    else {
-                        scenarios.get(scenarios.size() - 1).addCharacter(lineArray);
-                        hasLineParsedSuccessfully = true;                        
-                    }
-
-                } catch (InvalidDataFormatException e) {
-                    System.out.println(e.getMessage() + lineNumber);
-                    // Displays warning and then skips line
-                    hasLineParsedSuccessfully = true;
-                } catch (NumberFormatException e) {
-                    System.out.println("WARNING: invalid number format in scenarios file in line " + lineNumber);
-                    lineArray = elementReplace(lineArray, AGE, DFLT_AGE);
-                } catch (InvalidCharacteristicException e) {
-                    System.out.println(e.getMessage() + " in line " + lineNumber);
-
-                    switch (e.getIndexOfColumnWithError()) {
-                        case GENDER:
-                            lineArray = elementReplace(lineArray, GENDER, DFLT_GENDER);
-                            break;
-                        case AGE:
-                            lineArray = elementReplace(lineArray, AGE, DFLT_AGE);
-                            break;
-                        case BODY_TYPE:
-                            lineArray = elementReplace(lineArray, BODY_TYPE, DFLT_BODYTYPE);
-                            break;
-                        case PROFESSION:
-                            lineArray = elementReplace(lineArray, PROFESSION, DFLT_PROFESSION);
-                            break;
-                        case PREGNANT:
-                            lineArray = elementReplace(lineArray, PREGNANT, DFLT_PREGNANT);
-                            break;
-                        case IS_PET:
-                            lineArray = elementReplace(lineArray, IS_PET, DFLT_ISPET);
-                            break;                 
-                        default:
-                            break;
-                    }
-                }
-            }
+        scenarioImporter.discardWarnings();
+        //Only files that import without warnings are snapshotted, so the warnings are still shown on every launch
+        if (!scenarioImporter.hasWarnings()) {
+            ScenarioSnapshot.save(scenariosFile, scenarios);
         }
-        System.out.println(scenarios.size() + " scenarios imported.");
-        scenarioReader.close();
-        importedScenarios = true;
+        watchScenariosFile(scenariosFile, importedLength);
     }
 
     /**
-     * Replaces the element at index in array arr with String replacement
-     * @param arr array to have element replaced
-     * @param index index of element to be replaced
-     * @param replacement replacment element
-     * @return the original array with the element replaced
+     * Starts watching the imported scenarios file, so scenarios appended to it are picked up without a restart
+     * @param scenariosFile the imported scenarios file
+     * @param importedLength the number of bytes of the file that were imported, lines after them are picked up by the watcher
      */
-    private String[] elementReplace(String[] arr, int index, String replacement) {
-        ArrayList<String> arrLst = new ArrayList<String>(Arrays.asList(arr));
-        arrLst.set(index, replacement);
-        String[] arr1 = new String[8];
-        for (int i = 0; i < arr.length; i++) {
-            arr1[i] = arrLst.get(i);
-        }
-        return arr1;
+    private void watchScenariosFile(File scenariosFile, long importedLength) {
+        try {
+            scenarioWatcher = new ScenarioFileWatcher(scenariosFile, importedLength);
+        } catch (IOException e) {
+            //The imported scenarios can still be used, only appended scenarios are missed
+            scenarioWatcher = null;
+        }
     }
 
     /**
-     * Counts the number of commas (,) in an expression
-     * @param expression the string where the commas should be counted
-     * @return number of commas counted
+     * Parses the lines that have been appended to the scenarios file since they were last merged
+     * They are parsed by the importer of the file, so lines continuing the last scenario are added to it
      */
-    private int commaCounter(String expression) {
-        int count = 0;
-        char comma = ',';
-        for (int i = 0; i < expression.length(); i++) {
-            if (expression.charAt(i) == comma) {
-                count++;
+    private void mergeAppendedScenarios() {
+        if (scenarioWatcher == null) {
+            return;
+        }
+        ArrayList<String> appendedLines = scenarioWatcher.takeAppendedLines();
+        if (appendedLines.isEmpty()) {
+            return;
+        }
+        if (scenarioImporter == null) {
+            //The scenarios came from the snapshot, so appended lines continue after every line of the imported file
+            scenarioImporter = new ScenarioImporter(scenarios, scenarioWatcher.countImportedLines());
+        }
+        int scenarioCount = scenarios.size();
+        for (String line : appendedLines) {
+            if (line.isEmpty()) {
+                //A blank line only closes a scenario block
+                scenarioImporter.skipLine();
+            } else {
+                scenarioImporter.parseLine(line);
             }
         }
-        return count;
+        scenarioImporter.printWarnings();
+        if (scenarios.size() > scenarioCount) {
+            System.out.println((scenarios.size() - scenarioCount) + " new scenarios imported.");
+        }
     }
 
     /**
@@ -241,7 +229,13 @@ public class MainMenu {
             System.out.println("Please enter one of the following commands to continue:");
             System.out.println("- judge scenarios: [judge] or [j]");
             System.out.println("- run simulations with the in-built decision algorithm: [run] or [r]");
+            System.out.println("- run a monte carlo simulation until the statistics converge: [montecarlo] or [m]");
+            System.out.println("- sweep the weights of the decision algorithm: [sweep] or [w]");
             System.out.println("- show audit from history: [audit] or [a]");
+            System.out.println("- show a filtered audit from history: [filter] or [f]");
+            System.out.println("- follow the audit while the history grows: [follow] or [t]");
+            System.out.println("- cross-tabulate survival ratios from history: [crosstab] or [c]");
+            System.out.println("- show an audit of a region, or the locations nearest to a point: [region] or [g]");
             System.out.println("- quit the program: [quit] or [q]");
             System.out.print("> ");
             String menuChoice = inputScanner.next();
@@ -254,12 +248,37 @@ public class MainMenu {
                 case "r":
                     runSimulation();
                     break;
+                case "montecarlo":
+                case "m":
+                    runMonteCarloSimulation();
+                    break;
+                case "sweep":
+                case "w":
+                    runWeightSweep();
+                    break;
                 case "audit":
                 case "a":
                     conductAudit();
                     break;
+                case "filter":
+                case "f":
+                    conductFilteredAudit();
+                    break;
+                case "follow":
+                case "t":
+                    followAudit();
+                    break;
+                case "crosstab":
+                case "c":
+                    conductCrossTabulation();
+                    break;
+                case "region":
+                case "g":
+                    conductRegionAudit();
+                    break;
                 case "quit":
                 case "q":
+                    logWriter.close();
                     System.exit(0);
                     break;
                 default: // WRONG OPTION
@@ -280,10 +299,48 @@ public class MainMenu {
         }
     }
 
+    /**
+     * Shows the audit of the logfile and keeps it up to date while other processes append to the logfile, until the user presses Enter
+     */
+    private void followAudit() {
+        final long REDRAW_MILLIS = 500;
+
+        //Make sure the audit includes every judged scenario still waiting to be written
+        logWriter.flush();
+        AtomicBoolean enterPressed = new AtomicBoolean(false);
+        Thread enterListener = new Thread(() -> {
+            inputScanner.nextLine();
+            inputScanner.nextLine();
+            enterPressed.set(true);
+        }, "rescuebot-follow-input");
+        enterListener.setDaemon(true);
+        enterListener.start();
+        try {
+            new Auditor().followLogFile(logFilePath, REDRAW_MILLIS, enterPressed::get);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("ERROR: could not read the logfile. " + e.getMessage());
+        } finally {
+            //Following stopped without Enter being pressed. Reading the console can't be interrupted,
+            //so the listener is stopped by asking for the Enter it is waiting for
+            if (!enterPressed.get()) {
+                System.out.println("Press Enter to return to main menu.");
+                System.out.print("> ");
+            }
+            //The input scanner is only used by the menu again once the listener has finished with it
+            try {
+                enterListener.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     /**
      * Conducts the audit on the user and algorithm judgement choices
      */
     private void conductAudit() {
+        //Make sure the audit includes every judged scenario still waiting to be written
+        logWriter.flush();
         try {
             Auditor conductAudit = new Auditor();
             conductAudit.readLogFile(logFilePath);;
@@ -299,9 +356,173 @@ public class MainMenu {
         inputScanner.nextLine();
     }
 
+    /**
+     * Indexes the log file and then conducts audits on only the characters matching the filters entered by the user
+     */
+    private void conductFilteredAudit() {
+        logWriter.flush();
+        AuditIndex auditIndex = new AuditIndex();
+        try {
+            auditIndex.readLogFile(logFilePath);
+        } catch (FileNotFoundException | EmptyFileException e) {
+            System.out.println("No history found. Press Enter to return to main menu.");
+            System.out.print("> ");
+            inputScanner.nextLine();
+            inputScanner.nextLine();
+            return;
+        }
+        //Discard the rest of the menu command
+        inputScanner.nextLine();
+        while (true) {
+            System.out.println("Enter filters separated by spaces (e.g. bushfire trespassing doctor !pet locations>3), or press Enter to return to main menu.");
+            System.out.print("> ");
+            String filters = inputScanner.nextLine().trim();
+            if (filters.isEmpty()) {
+                return;
+            }
+            try {
+                auditIndex.printFilteredAudit(filters.split("\\s+"));
+            } catch (IllegalArgumentException e) {
+                System.out.print("Invalid filter: " + e.getMessage() + "! ");
+            }
+        }
+    }
+
+    /**
+     * Indexes the log file and then audits the characters logged inside a region, or at the locations nearest to a point
+     */
+    private void conductRegionAudit() {
+        logWriter.flush();
+        loadScenarios();
+        AuditIndex auditIndex = new AuditIndex();
+        try {
+            auditIndex.readLogFile(logFilePath);
+        } catch (FileNotFoundException | EmptyFileException e) {
+            System.out.println("No history found. Press Enter to return to main menu.");
+            System.out.print("> ");
+            inputScanner.nextLine();
+            inputScanner.nextLine();
+            return;
+        }
+        //Discard the rest of the menu command
+        inputScanner.nextLine();
+        while (true) {
+            System.out.println("Enter two corners of a region (e.g. 10 S, 120 E, 20 N, 150 E), or a point to find the nearest locations (e.g. 13.7154 N, 150.9094 W), or press Enter to return to main menu.");
+            System.out.print("> ");
+            String[] request = inputScanner.nextLine().split(",");
+            if (request[0].trim().isEmpty()) {
+                return;
+            }
+            int[] coordinates = new int[request.length];
+            boolean validCoordinates = (request.length == 2 || request.length == 4);
+            for (int i = 0; i < request.length && validCoordinates; i++) {
+                //Latitudes and longitudes alternate
+                coordinates[i] = (i % 2 == 0) ? Location.parseLatitude(request[i].trim().toUpperCase()) : Location.parseLongitude(request[i].trim().toUpperCase());
+                validCoordinates = coordinates[i] != Location.UNKNOWN_COORDINATE;
+            }
+            if (!validCoordinates) {
+                System.out.print("Invalid Input! ");
+                continue;
+            }
+            if (request.length == 4) {
+                auditIndex.printRegionAudit(Math.min(coordinates[0], coordinates[2]), Math.min(coordinates[1], coordinates[3]),
+                        Math.max(coordinates[0], coordinates[2]), Math.max(coordinates[1], coordinates[3]));
+            } else {
+                if (!auditIndex.printNearestLocationAudit(coordinates[0], coordinates[1])) {
+                    System.out.println("No logged location has coordinates.");
+                }
+                printNearestImportedLocation(coordinates[0], coordinates[1]);
+            }
+        }
+    }
+
+    /**
+     * Print the imported location nearest to a point, with its characters
+     * @param latitude the fixed point latitude of the point
+     * @param longitude the fixed point longitude of the point
+     */
+    private void printNearestImportedLocation(int latitude, int longitude) {
+        if (!importedScenarios) {
+            return;
+        }
+        //Index the locations imported since the last lookup, including locations appended to the last indexed scenario
+        for (int s = Math.max(0, indexedScenarioCount - 1); s < scenarios.size(); s++) {
+            Scenario scenario = scenarios.get(s);
+            int firstLocation = (s == indexedScenarioCount - 1) ? indexedLastScenarioLocations : 0;
+            for (int i = firstLocation; i < scenario.getNumberOfLocations(); i++) {
+                int location = importedLocations.add(scenario.getLocation(i).getLatitudeValue(), scenario.getLocation(i).getLongitudeValue());
+                if (location >= importedLocationScenarios.length) {
+                    importedLocationScenarios = Arrays.copyOf(importedLocationScenarios, Math.max(1024, location * 2));
+                }
+                importedLocationScenarios[location] = s;
+            }
+            indexedLastScenarioLocations = scenario.getNumberOfLocations();
+        }
+        indexedScenarioCount = scenarios.size();
+        int nearest = importedLocations.findNearest(latitude, longitude);
+        if (nearest < 0) {
+            return;
+        }
+        Scenario scenario = scenarios.get(importedLocationScenarios[nearest]);
+        Location location = null;
+        for (int i = 0; i < scenario.getNumberOfLocations() && location == null; i++) {
+            if (scenario.getLocation(i).getLatitudeValue() == importedLocations.getLatitude(nearest)
+                    && scenario.getLocation(i).getLongitudeValue() == importedLocations.getLongitude(nearest)) {
+                location = scenario.getLocation(i);
+            }
+        }
+        System.out.println("======================================");
+        System.out.println("# Nearest Imported Location: " + location.getCoordinatesToString());
+        System.out.println("======================================");
+        System.out.println("Scenario #" + (importedLocationScenarios[nearest] + 1) + ": " + scenario.getDisaster());
+        System.out.println(location.getEntryStatusToString());
+        System.out.print(location.getCharactersToString());
+    }
+
+    /**
+     * Reads the log file into survival cubes and then cross-tabulates the two dimensions entered by the user
+     */
+    private void conductCrossTabulation() {
+        logWriter.flush();
+        Auditor auditor = new Auditor();
+        try {
+            auditor.readLogFile(logFilePath);
+        } catch (FileNotFoundException | EmptyFileException e) {
+            System.out.println("No history found. Press Enter to return to main menu.");
+            System.out.print("> ");
+            inputScanner.nextLine();
+            inputScanner.nextLine();
+            return;
+        }
+        //Discard the rest of the menu command
+        inputScanner.nextLine();
+        while (true) {
+            System.out.println("Enter two dimensions and optionally a disaster separated by commas (e.g. profession, age category, bushfire), or press Enter to return to main menu.");
+            System.out.println("Dimensions: gender, age category, body type, profession, pregnant, species, pet, trespassing, disaster");
+            System.out.print("> ");
+            String[] request = inputScanner.nextLine().split(",");
+            if (request[0].trim().isEmpty()) {
+                return;
+            }
+            SurvivalCube.Dimension rowDimension = SurvivalCube.parseDimension(request[0]);
+            SurvivalCube.Dimension columnDimension = (request.length > 1) ? SurvivalCube.parseDimension(request[1]) : null;
+            if (rowDimension == null || columnDimension == null || request.length > 3) {
+                System.out.print("Invalid Input! ");
+                continue;
+            }
+            String disaster = (request.length == 3) ? request[2].trim() : null;
+            if (auditor.hasAlgorithmDecisions()) {
+                auditor.getAlgorithmStatistics().getSurvivalCube().printCrossTabulation("Algorithm Audit", rowDimension, columnDimension, disaster);
+            }
+            if (auditor.hasUserDecisions()) {
+                auditor.getUserStatistics().getSurvivalCube().printCrossTabulation("User Audit", rowDimension, columnDimension, disaster);
+            }
+        }
+    }
+
     /**
      * Asks user for consent 
-     * If scenarios are not loaded in, generates scenarios
+     * If scenarios are not loaded in, generates scenarios, otherwise streams them from the scenarios file starting where the last session stopped
      * prints the scenario to the screen and asks user to judge when location to save
      * Saves the scenario to the log file
      * Asks user if they want to continue judging or to stop judging
@@ -331,22 +552,33 @@ public class MainMenu {
                 System.out.print(e.getMessage());
             }
         }
+        //Only logged decisions move the saved cursor, a session that isn't logged starts from the same scenarios next time
+        ScenarioCursor sessionCursor = null;
+        if (importedScenarios) {
+            sessionCursor = consentToStoreData ? scenarioCursor : new ScenarioCursor(scenarioCursor);
+            if (sessionCursor.getJudgedCount() > 0) {
+                System.out.println("Resuming after the " + sessionCursor.getJudgedCount() + " scenarios judged in previous sessions.");
+            }
+        }
         //Present the scenarios to the user to be judged
-        int currentScenarioIndex = 0;
         StatisticsGenerator statGenerator = new StatisticsGenerator();
         boolean continueJudging = true;
         while (continueJudging) {
-            //Check if scenarios have been imported, if they have do not generate new scenarios however if not then generate 3
+            //Check if scenarios have been imported, if they have stream the next 3 from the scenarios file however if not then generate 3
+            ArrayList<Scenario> scenariosToBeJudged;
             if (!importedScenarios) {
                 generateScenarios(3);
-                currentScenarioIndex = 0;
+                scenariosToBeJudged = scenarios;
+            } else {
+                scenariosToBeJudged = sessionCursor.readScenarios(3);
             }
             ArrayList<Scenario> scenariosToBeLogged = new ArrayList<>();
             ArrayList<Integer> savedLocations = new ArrayList<>();
             //Loop until all scenarios have been processed or three scenarios have been processed (whichever comes first)
-            for (int i = 0; i < 3 && currentScenarioIndex < scenarios.size(); i++, currentScenarioIndex++) {
+            for (int currentScenarioIndex = 0; currentScenarioIndex < scenariosToBeJudged.size(); currentScenarioIndex++) {
+                Scenario currentScenario = scenariosToBeJudged.get(currentScenarioIndex);
                 // Print the current scenario to the console
-                scenarios.get(i).printScenario();
+                currentScenario.printScenario();
                 // Ask user where to deploy the RescueBot and check their input
                 boolean validDecision = false;
                 while (!validDecision) {
@@ -354,13 +586,13 @@ public class MainMenu {
                         System.out.println("To which location should RescueBot be deployed?");
                         System.out.print("> ");
                         int input = Integer.parseInt(inputScanner.next());
-                        if (input > 0 && input <= scenarios.get(i).getNumberOfLocations()) {
+                        if (input > 0 && input <= currentScenario.getNumberOfLocations()) {
                             // Saves the characters at this location
                             validDecision = true;
                             // PASS OBJECT TO STATISTICS CLASS
-                            statGenerator.parseScenarioForStatistics(scenarios.get(i), input-1);
+                            statGenerator.parseScenarioForStatistics(currentScenario, input-1);
                             //Add data to be logged
-                            scenariosToBeLogged.add(scenarios.get(i));
+                            scenariosToBeLogged.add(currentScenario);
                             savedLocations.add(input-1);
                         } else {
                             throw new NumberFormatException();
@@ -375,11 +607,23 @@ public class MainMenu {
 
             //SAVE JUDGED STATISTICS
             if(consentToStoreData) {
-                //Write the scenarios to the logfile
-                statGenerator.saveStatisticsToLogFile(logFilePath, scenariosToBeLogged, savedLocations, "user");
+                //Hand the scenarios to the background writer so the next scenario is not held up by the disk
+                logWriter.submit(logFilePath, StatisticsGenerator.formatLogBatch(scenariosToBeLogged, savedLocations, "user"));
             }
 
-            boolean moreScenariosToJudge = currentScenarioIndex < scenarios.size()-1;
+            boolean moreScenariosToJudge = false;
+            if (importedScenarios) {
+                sessionCursor.advance(scenariosToBeJudged.size());
+                moreScenariosToJudge = sessionCursor.hasMoreScenarios();
+                if (!moreScenariosToJudge) {
+                    //Every scenario of the file has been judged, so the next session starts from the first scenario again
+                    sessionCursor.reset();
+                }
+                if (consentToStoreData) {
+                    //The next session resumes after the scenarios judged so far, once the writer thread has logged them
+                    logWriter.afterWritten(sessionCursor.savePosition());
+                }
+            }
             if (moreScenariosToJudge || !importedScenarios) {
                 boolean validUserResponse = false;
                 while (!validUserResponse) {
@@ -416,7 +660,11 @@ public class MainMenu {
      * Prints the results to the screen and then saves to the logfile
      */
     private void runSimulation() {
+        final int SCENARIOS_PER_CHUNK = 10000;     //Only this many generated scenarios are held in memory at once
+
         StatisticsGenerator statGenerator = new StatisticsGenerator();
+        loadScenarios();
+        int numberOfScenariosToRun = importedScenarios ? scenarios.size() : 0;
         if (!importedScenarios) {
             boolean validNumberOfScenarios = false;
             while (!validNumberOfScenarios) {
@@ -426,7 +674,7 @@ public class MainMenu {
                     int input = Integer.parseInt(inputScanner.next());
                     if (input >= 2) {
                         validNumberOfScenarios = true;
-                        generateScenarios(input);
+                        numberOfScenariosToRun = input;
                     } else {
                         throw new NumberFormatException();
                     }
@@ -435,23 +683,190 @@ public class MainMenu {
                 }
             }            
         }
+        //Write to LogFile as the scenarios are decided, after any judged scenarios that are still waiting to be written
+        logWriter.flush();
+        //A compressed log file gets each chunk as its own batch, as every compressed block has to end on a '-----' line.
+        //A plain log file gets one batch, which is written to a file of its own first and appended once it is complete,
+        //so it can't interleave with batches of other processes appending to the same log file
+        boolean compressedLog = CompressedLog.shouldCompress(new File(logFilePath));
+        File batchFile = null;
+        PrintWriter statLogger = null;
+        if (!compressedLog) {
+            try {
+                batchFile = File.createTempFile("rescuebot", ".batch");
+                batchFile.deleteOnExit();
+                statLogger = new PrintWriter(batchFile, CompressedLog.LOG_CHARSET);
+            } catch (IOException e) {
+                System.out.println("ERROR: could not print results. Target directory does not exist.");
+                System.exit(1);
+            }
+            statLogger.println("decisionMaker:algorithm");
+        }
+        //Generate, decide, aggregate and log one chunk of scenarios at a time
+        DecisionCache decisionCache = RescueBot.getDecisionCache();
+        long cacheHits = decisionCache.getHits();
+        long cacheMisses = decisionCache.getMisses();
+        StringBuilder loggedChunk = new StringBuilder();
         ArrayList<Integer> savedLocations = new ArrayList<>();
-
-        for (int i = 0; i < scenarios.size(); i++) {
-            Scenario currentScenario = scenarios.get(i);
-            Location savedLocation = RescueBot.decide(currentScenario);
-            int savedLocationIndex = currentScenario.getIndexOfLocation(savedLocation);
-            savedLocations.add(savedLocationIndex);
-            statGenerator.parseScenarioForStatistics(currentScenario, savedLocationIndex);
+        for (int chunkStart = 0; chunkStart < numberOfScenariosToRun; chunkStart += SCENARIOS_PER_CHUNK) {
+            int chunkEnd = Math.min(chunkStart + SCENARIOS_PER_CHUNK, numberOfScenariosToRun);
+            List<Scenario> chunk;
+            if (importedScenarios) {
+                chunk = scenarios.subList(chunkStart, chunkEnd);
+            } else {
+                chunk = new ArrayList<>(chunkEnd - chunkStart);
+                for (int i = chunkStart; i < chunkEnd; i++) {
+                    chunk.add(new Scenario());
+                }
+            }
+            savedLocations.clear();
+            //Generated scenarios are new, so only imported scenarios can be answered from the decision cache,
+            //generated scenarios are decided as one batch by the scoring kernel instead
+            int[] decidedChunk = importedScenarios ? null : RescueBot.decideAll(chunk, RescueBot.getActiveProfile());
+            for (int i = 0; i < chunk.size(); i++) {
+                Scenario currentScenario = chunk.get(i);
+                int savedLocationIndex = importedScenarios ? currentScenario.getIndexOfLocation(RescueBot.decide(currentScenario)) : decidedChunk[i];
+                savedLocations.add(savedLocationIndex);
+                //Nothing is rendered in quiet mode, so the statistics don't need to be generated either
+                if (!ReportRenderer.isQuiet()) {
+                    statGenerator.parseScenarioForStatistics(currentScenario, savedLocationIndex);
+                }
+            }
+            if (compressedLog) {
+                try {
+                    StatisticsGenerator.appendToLogFile(logFilePath, StatisticsGenerator.formatLogBatch(chunk, savedLocations, "algorithm"));
+                } catch (IOException e) {
+                    System.out.println("ERROR: could not print results. " + LogAppender.describeFailure(e));
+                    System.exit(1);
+                }
+            } else {
+                loggedChunk.setLength(0);
+                StatisticsGenerator.formatLoggedScenarios(loggedChunk, chunk, savedLocations);
+                statLogger.print(loggedChunk);
+            }
+        }
+        if (!compressedLog) {
+            statLogger.println("-----");
+            statLogger.close();
+            try {
+                StatisticsGenerator.appendToLogFile(logFilePath, batchFile.toPath());
+            } catch (IOException e) {
+                System.out.println("ERROR: could not print results. " + LogAppender.describeFailure(e));
+                System.exit(1);
+            }
+            batchFile.delete();
         }
         //Generate the statistics
-        statGenerator.printStatistics("Statistic");
-        //Write to LogFile
-        statGenerator.saveStatisticsToLogFile(logFilePath, scenarios, savedLocations, "algorithm");
+        if (!ReportRenderer.isQuiet()) {
+            statGenerator.printStatistics("Statistic");
+        }
+        if (importedScenarios && ReportRenderer.isVerbose()) {
+            System.out.println("Decision cache: " + (decisionCache.getHits() - cacheHits) + " hits, "
+                    + (decisionCache.getMisses() - cacheMisses) + " misses");
+        }
         //End
         System.out.println("That's all. Press Enter to return to main menu.");
         System.out.print("> ");
         inputScanner.nextLine();
         inputScanner.nextLine();
     }
+
+    /**
+     * Runs generated scenarios through the in-built decision algorithm until the survival ratios converge
+     * Asks the user how precise the survival ratios need to be, the scenarios are not saved to the logfile
+     */
+    private void runMonteCarloSimulation() {
+        final long SCENARIO_BUDGET = 10000000;
+        final long TIME_BUDGET_MILLIS = 60000;
+
+        double targetIntervalWidth = 0;
+        boolean validWidth = false;
+        while (!validWidth) {
+            System.out.println("How wide may the 95% confidence interval of each survival ratio be? (e.g. 0.02)");
+            System.out.print("> ");
+            try {
+                targetIntervalWidth = Double.parseDouble(inputScanner.next());
+                if (targetIntervalWidth > 0 && targetIntervalWidth < 1) {
+                    validWidth = true;
+                } else {
+                    throw new NumberFormatException();
+                }
+            } catch (NumberFormatException e) {
+                System.out.print("Invalid Input! ");
+            }
+        }
+        MonteCarloSimulator simulator = new MonteCarloSimulator(targetIntervalWidth, SCENARIO_BUDGET, TIME_BUDGET_MILLIS);
+        simulator.simulate().printStatistics("Monte Carlo Statistic");
+        simulator.printConfidenceIntervals();
+        //End
+        System.out.println("That's all. Press Enter to return to main menu.");
+        System.out.print("> ");
+        inputScanner.nextLine();
+        inputScanner.nextLine();
+    }
+
+    /**
+     * Re-decides the imported scenarios (or newly generated ones) with a grid or random sample of weight settings,
+     * and shows how far the decisions and survival ratios move from the in-built weights. Nothing is saved to the logfile
+     */
+    private void runWeightSweep() {
+        final long SWEEP_SEED = 36;       //Random samples are repeatable, so changes to the weights can be compared between runs
+
+        loadScenarios();
+        List<Scenario> corpus = importedScenarios ? scenarios : null;
+        if (!importedScenarios) {
+            ArrayList<Scenario> generatedScenarios = new ArrayList<>();
+            int numberOfScenarios = readPositiveNumber("How many scenarios should be generated for the sweep?");
+            for (int i = 0; i < numberOfScenarios; i++) {
+                generatedScenarios.add(new Scenario());
+            }
+            corpus = generatedScenarios;
+        }
+        String sweepType = "";
+        while (!sweepType.equals("grid") && !sweepType.equals("random")) {
+            System.out.println("Sweep a grid around the in-built weights, or a random sample of weights? [grid/random]");
+            System.out.print("> ");
+            sweepType = inputScanner.next().toLowerCase();
+            if (!sweepType.equals("grid") && !sweepType.equals("random")) {
+                System.out.print("Invalid response! ");
+            }
+        }
+        int sampleSize = sweepType.equals("random") ? readPositiveNumber("How many weight settings should be sampled?") : 0;
+
+        long start = System.currentTimeMillis();
+        WeightSweep sweep = new WeightSweep(corpus, RescueBot.getActiveProfile());
+        if (sweepType.equals("grid")) {
+            sweep.addGrid();
+        } else {
+            sweep.addRandomSample(sampleSize, SWEEP_SEED);
+        }
+        sweep.evaluate();
+        sweep.printReport(System.currentTimeMillis() - start);
+        //End
+        System.out.println("That's all. Press Enter to return to main menu.");
+        System.out.print("> ");
+        inputScanner.nextLine();
+        inputScanner.nextLine();
+    }
+
+    /**
+     * Asks the user for a number until a positive whole number is entered
+     * @param question the question to ask
+     * @return the number
+     */
+    private int readPositiveNumber(String question) {
+        while (true) {
+            System.out.println(question);
+            System.out.print("> ");
+            try {
+                int input = Integer.parseInt(inputScanner.next());
+                if (input > 0) {
+                    return input;
+                }
+                throw new NumberFormatException();
+            } catch (NumberFormatException e) {
+                System.out.print("Invalid Input! ");
+            }
+        }
+    }
 }
@@ -0,0 +1,111 @@
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * Runs randomly generated scenarios through the RescueBot until the survival ratio of every attribute is known precisely enough
+ * Scenarios are streamed through the decision algorithm and the statistics, so none of them are kept in memory
+ * @author Joshia Nambi
+ */
+public class MonteCarloSimulator {
+
+    private final static double Z_SCORE = 1.96;            //95% confidence
+    private final static int SCENARIOS_PER_CHECK = 500;    //How often the confidence intervals are checked for convergence
+
+    private double targetIntervalWidth;
+    private long scenarioBudget;
+    private long timeBudgetMillis;
+    private StatisticsGenerator statGenerator;
+    private boolean converged = false;
+
+    /**
+     * @param targetIntervalWidth the simulation stops once every confidence interval is narrower than this
+     * @param scenarioBudget the maximum number of scenarios to simulate
+     * @param timeBudgetMillis the maximum time to simulate for, in milliseconds
+     */
+    public MonteCarloSimulator(double targetIntervalWidth, long scenarioBudget, long timeBudgetMillis) {
+        this.targetIntervalWidth = targetIntervalWidth;
+        this.scenarioBudget = scenarioBudget;
+        this.timeBudgetMillis = timeBudgetMillis;
+        statGenerator = new StatisticsGenerator();
+    }
+
+    /**
+     * Generates and decides scenarios until the confidence intervals converge or a budget runs out
+     * @return the statistics of the simulated scenarios
+     */
+    public StatisticsGenerator simulate() {
+        long deadline = System.currentTimeMillis() + timeBudgetMillis;
+        long scenariosSimulated = 0;
+        while (!converged && scenariosSimulated < scenarioBudget && System.currentTimeMillis() < deadline) {
+            for (int i = 0; i < SCENARIOS_PER_CHECK && scenariosSimulated < scenarioBudget; i++, scenariosSimulated++) {
+                Scenario currentScenario = new Scenario();
+                Location savedLocation = RescueBot.decide(currentScenario, RescueBot.getActiveProfile());
+                statGenerator.parseScenarioForStatistics(currentScenario, currentScenario.getIndexOfLocation(savedLocation));
+            }
+            converged = intervalsAreNarrowEnough();
+        }
+        return statGenerator;
+    }
+
+    /**
+     * @return true if the simulation stopped because every confidence interval was narrow enough
+     */
+    public boolean hasConverged() {
+        return converged;
+    }
+
+    /**
+     * @return true if the confidence interval of every reported attribute is narrower than the target width
+     */
+    private boolean intervalsAreNarrowEnough() {
+        for (Pair pair : statGenerator.getStatistics()) {
+            if (StatisticsGenerator.isReportedAttribute(pair.getAttribute()) && getIntervalWidth(pair) >= targetIntervalWidth) {
+                return false;
+            }
+        }
+        return statGenerator.getStatistics().size() > 0;
+    }
+
+    /**
+     * Prints the 95% confidence interval of the survival ratio of every attribute to the console
+     */
+    public void printConfidenceIntervals() {
+        ArrayList<Pair> statistics = statGenerator.getStatistics();
+        Collections.sort(statistics, (new PairComparator()));
+        System.out.println("- 95% CONFIDENCE INTERVALS");
+        for (Pair pair : statistics) {
+            if (StatisticsGenerator.isReportedAttribute(pair.getAttribute())) {
+                double[] interval = getInterval(pair);
+                System.out.printf("%s: [%.3f, %.3f]\n", pair.getAttribute(), interval[0], interval[1]);
+            }
+        }
+        System.out.println("--");
+        if (converged) {
+            System.out.printf("converged to a width of %.3f after %d runs\n", targetIntervalWidth, statGenerator.getScenarioCount());
+        } else {
+            System.out.printf("stopped by the budget after %d runs before converging to a width of %.3f\n", statGenerator.getScenarioCount(), targetIntervalWidth);
+        }
+    }
+
+    /**
+     * Calculates the Wilson score interval of the survival ratio, which stays sensible for ratios close to 0 or 1
+     * @param pair the attribute
+     * @return the lower and upper bound of the interval
+     */
+    private double[] getInterval(Pair pair) {
+        double n = pair.getTotal();
+        if (n == 0) {
+            return new double[] {0, 1};
+        }
+        double p = pair.getSaved() / n;
+        double z2 = Z_SCORE * Z_SCORE;
+        double centre = (p + z2 / (2 * n)) / (1 + z2 / n);
+        double margin = Z_SCORE * Math.sqrt(p * (1 - p) / n + z2 / (4 * n * n)) / (1 + z2 / n);
+        return new double[] {Math.max(0, centre - margin), Math.min(1, centre + margin)};
+    }
+
+    private double getIntervalWidth(Pair pair) {
+        double[] interval = getInterval(pair);
+        return interval[1] - interval[0];
+    }
+}
@@ -13,6 +13,18 @@ public class Pair implements Comparable<Pair> {
         this.attribute = attribute;
     }
 
+    /**
+     * Constructs a pair from counts that were already collected
+     * @param attribute the attribute
+     * @param saved number of characters with the attribute that were saved
+     * @param total number of characters with the attribute
+     */
+    public Pair(String attribute, int saved, int total) {
+        this.attribute = attribute;
+        this.saved = saved;
+        this.total = total;
+    }
+
     /**
      * Compares this pair to another pair
      * Use to develop the comparator class
@@ -43,20 +55,12 @@ public class Pair implements Comparable<Pair> {
         total++;
     }
 
-    /**
-     * Adds a sum to the saved variables
-     * @param i the number to add
-     */
-    public void sumSaved(int i) {
-        saved += i;
-    }
-
     /**
      * Converts object to string
      */
     @Override
     public String toString() {
-        return attribute + ": " + getSurvivalRatio();
+        return new StringBuilder(attribute.length() + 24).append(attribute).append(": ").append(getSurvivalRatio()).toString();
     }
 
 
@@ -64,6 +68,14 @@ public class Pair implements Comparable<Pair> {
         return attribute;
     }
 
+    public int getSaved() {
+        return saved;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
     /**
      * Calculate the survial ratio of the attribute
      * @return the survival ratio of the attribute
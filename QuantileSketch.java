@@ -0,0 +1,171 @@
+import java.util.Arrays;
+
+/**
+ * A KLL sketch of a stream of whole numbers, used to report quantiles (e.g. the median age) in bounded memory
+ * Values are added to the lowest level. When the sketch is full, the lowest full level is sorted and every other value is promoted
+ * to the level above, where each value stands for twice as many values. The capacity of a level shrinks by 2/3 for every level
+ * below the top, so a sketch holds about 3k values however many are added, and two sketches can be merged by joining their levels
+ * @author Joshia Nambi
+ */
+public class QuantileSketch {
+
+    private final static int DEFAULT_ACCURACY = 200;        //The capacity of the top level, k
+    private final static double CAPACITY_DECAY = 2.0 / 3.0;
+    private final static int MIN_CAPACITY = 8;
+
+    private int accuracy;
+    private int[][] levels;         //The values of each level, a value of level h stands for 2^h added values
+    private int[] levelSizes;
+    private int[] capacities;       //The number of values each level holds before it is compacted
+    private int size = 0;           //The number of values held over all levels
+    private int totalCapacity;
+    private long count = 0;
+    private boolean keepOddValues = false;      //Alternates which half of a level is promoted, so the sketch doesn't need random numbers
+
+    public QuantileSketch() {
+        this(DEFAULT_ACCURACY);
+    }
+
+    /**
+     * @param accuracy the capacity of the top level (k), the rank error shrinks in proportion to it
+     */
+    public QuantileSketch(int accuracy) {
+        this.accuracy = accuracy;
+        this.levels = new int[0][];
+        this.levelSizes = new int[0];
+        addLevel();
+    }
+
+    /**
+     * Adds a value to the sketch
+     * @param value the value
+     */
+    public void add(int value) {
+        if (levelSizes[0] == levels[0].length) {
+            levels[0] = Arrays.copyOf(levels[0], levels[0].length * 2);
+        }
+        levels[0][levelSizes[0]++] = value;
+        size++;
+        count++;
+        if (size > totalCapacity) {
+            compress();
+        }
+    }
+
+    /**
+     * Adds every value of another sketch to this one, e.g. to combine the sketches of several threads
+     * @param other the other sketch, which is left unchanged
+     */
+    public void merge(QuantileSketch other) {
+        for (int h = 0; h < other.levels.length; h++) {
+            if (h == levels.length) {
+                addLevel();
+            }
+            ensureCapacity(h, levelSizes[h] + other.levelSizes[h]);
+            System.arraycopy(other.levels[h], 0, levels[h], levelSizes[h], other.levelSizes[h]);
+            levelSizes[h] += other.levelSizes[h];
+            size += other.levelSizes[h];
+        }
+        count += other.count;
+        compress();
+    }
+
+    /**
+     * @return the number of values added
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Estimates a quantile, within a rank error of about 1.7/k of the number of values added
+     * @param fraction the fraction of values that are at most the quantile, e.g. 0.5 for the median
+     * @return the smallest value with at least that fraction of the values at or below it, or 0 if no values were added
+     */
+    public int getQuantile(double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+        //Sort the weighted values together, the weight of a value is stored in the low bits beside it
+        long[] weightedValues = new long[size];
+        int position = 0;
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < levelSizes[h]; i++) {
+                weightedValues[position++] = ((long) levels[h][i] << 8) | h;
+            }
+        }
+        Arrays.sort(weightedValues);
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long weight = 0;
+        for (long weightedValue : weightedValues) {
+            weight += 1L << (weightedValue & 0xff);
+            if (weight >= rank) {
+                return (int) (weightedValue >> 8);
+            }
+        }
+        return (int) (weightedValues[size - 1] >> 8);
+    }
+
+    /**
+     * Compacts the lowest full level until the sketch fits in its capacity
+     */
+    private void compress() {
+        while (size > totalCapacity) {
+            //A level is always full while the sketch is over its capacity
+            int h = 0;
+            while (levelSizes[h] < capacities[h]) {
+                h++;
+            }
+            compact(h);
+        }
+    }
+
+    /**
+     * Promotes every other value of a sorted level to the level above, each promoted value standing for two values
+     * A level with an odd number of values keeps its largest value
+     * @param h the level
+     */
+    private void compact(int h) {
+        if (h + 1 == levels.length) {
+            addLevel();
+        }
+        int levelSize = levelSizes[h];
+        int[] level = levels[h];
+        Arrays.sort(level, 0, levelSize);
+        int pairs = levelSize / 2;
+        ensureCapacity(h + 1, levelSizes[h + 1] + pairs);
+        int offset = keepOddValues ? 1 : 0;
+        keepOddValues = !keepOddValues;
+        for (int i = 0; i < pairs; i++) {
+            levels[h + 1][levelSizes[h + 1]++] = level[2 * i + offset];
+        }
+        size -= pairs;
+        if (levelSize % 2 == 1) {
+            level[0] = level[levelSize - 1];
+            levelSizes[h] = 1;
+        } else {
+            levelSizes[h] = 0;
+        }
+    }
+
+    /**
+     * Adds a level on top, which lowers the capacity of every level below it
+     */
+    private void addLevel() {
+        levels = Arrays.copyOf(levels, levels.length + 1);
+        levelSizes = Arrays.copyOf(levelSizes, levelSizes.length + 1);
+        levels[levels.length - 1] = new int[MIN_CAPACITY];
+        capacities = new int[levels.length];
+        totalCapacity = 0;
+        for (int h = 0; h < levels.length; h++) {
+            capacities[h] = Math.max(MIN_CAPACITY, (int) Math.ceil(accuracy * Math.pow(CAPACITY_DECAY, levels.length - 1 - h)));
+            totalCapacity += capacities[h];
+        }
+    }
+
+    private void ensureCapacity(int h, int size) {
+        if (size > levels[h].length) {
+            levels[h] = Arrays.copyOf(levels[h], Math.max(size, levels[h].length * 2));
+        }
+    }
+}
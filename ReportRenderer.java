@@ -0,0 +1,141 @@
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Renders console reports (scenarios and statistics) into a reusable buffer, which is written out once per report
+ * Ratios are formatted exactly like printf("%.2f"), so rendered reports are identical to printing them line by line
+ * @author Joshia Nambi
+ */
+public class ReportRenderer {
+
+    private final static String SEPARATOR = "======================================";
+    private final static int INITIAL_CAPACITY = 8192;
+    private final static int MAX_RETAINED_CAPACITY = 1 << 20;  //A buffer that grew larger than this for one report is not kept
+
+    private static boolean quiet = false;
+    private static boolean verbose = false;
+    private static ReportRenderer console;
+
+    private StringBuilder buffer;
+    private PrintStream out;
+
+    /**
+     * @param out where the reports are written
+     */
+    public ReportRenderer(PrintStream out) {
+        this.out = out;
+        this.buffer = new StringBuilder(INITIAL_CAPACITY);
+    }
+
+    /**
+     * @return the renderer shared by every report written to the console
+     */
+    public static ReportRenderer getConsole() {
+        if (console == null || console.out != System.out) {
+            console = new ReportRenderer(System.out);
+        }
+        return console;
+    }
+
+    /**
+     * Skips rendering the reports of bulk runs, which only need to be written to the logfile
+     * @param skipReports true to skip the reports
+     */
+    public static void setQuiet(boolean skipReports) {
+        quiet = skipReports;
+    }
+
+    public static boolean isQuiet() {
+        return quiet;
+    }
+
+    /**
+     * Adds diagnostics to the reports of bulk runs, such as how often the decision cache was hit
+     * @param showDiagnostics true to show the diagnostics
+     */
+    public static void setVerbose(boolean showDiagnostics) {
+        verbose = showDiagnostics;
+    }
+
+    public static boolean isVerbose() {
+        return verbose;
+    }
+
+    /**
+     * @return the buffer the report is rendered into, for classes that render their own parts
+     */
+    public StringBuilder getBuffer() {
+        return buffer;
+    }
+
+    public ReportRenderer append(String text) {
+        buffer.append(text);
+        return this;
+    }
+
+    public ReportRenderer append(int number) {
+        buffer.append(number);
+        return this;
+    }
+
+    public ReportRenderer append(long number) {
+        buffer.append(number);
+        return this;
+    }
+
+    public ReportRenderer line(String text) {
+        buffer.append(text).append('\n');
+        return this;
+    }
+
+    /**
+     * Renders a title between two separator lines
+     * @param title the title, without the leading '# '
+     */
+    public ReportRenderer title(String title) {
+        buffer.append(SEPARATOR).append('\n');
+        buffer.append("# ").append(title).append('\n');
+        buffer.append(SEPARATOR).append('\n');
+        return this;
+    }
+
+    /**
+     * Renders a line of the form "attribute: 0.00"
+     * @param attribute the attribute
+     * @param ratio the value, rounded to two decimal places
+     */
+    public ReportRenderer ratioLine(String attribute, double ratio) {
+        buffer.append(attribute).append(": ");
+        appendTwoDecimals(ratio);
+        buffer.append('\n');
+        return this;
+    }
+
+    /**
+     * Appends a number rounded to two decimal places, in the same way as printf("%.2f")
+     * @param value the number
+     */
+    public ReportRenderer appendTwoDecimals(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            buffer.append(value);
+        } else {
+            //printf rounds the shortest decimal representation of the number half up
+            buffer.append(new BigDecimal(Double.toString(value)).setScale(2, RoundingMode.HALF_UP).toPlainString());
+        }
+        return this;
+    }
+
+    /**
+     * Writes the rendered report out in one go and empties the buffer for the next report
+     */
+    public void flush() {
+        out.print(buffer);
+        out.flush();
+        if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+            buffer = new StringBuilder(INITIAL_CAPACITY);
+        } else {
+            buffer.setLength(0);
+        }
+    }
+}
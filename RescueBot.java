@@ -1,6 +1,11 @@
-import java.util.HashMap;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.List;
+
+import lib.LivingBeing;
+import lib.exceptions.EmptyFileException;
+import lib.exceptions.InvalidDataFormatException;
 
 /**
  * COMP90041, Sem1, 2023: Final Project
@@ -10,66 +15,108 @@ import java.io.FileNotFoundException;
  */
 public class RescueBot {
 
+    private final static int DECISION_CACHE_CAPACITY = 100000;
+    private final static int MAX_REPORTED_SPECIES = 10000;
+    final static int DESCRIPTION_IDS = 8;      //Room for the words describing almost every character, longer descriptions grow the buffer
+
+    private static WeightProfile activeProfile = WeightProfile.getDefaultProfile();
+    private static DecisionCache decisionCache = new DecisionCache(DECISION_CACHE_CAPACITY);
+    private static ScoringKernel scoringKernel = loadScoringKernel("vector", new ScalarScoringKernel());
+
     /**
      * Given a scenario, chooses to save the characters at a particular location using a RescueBot based on some character parameters
+     * Scenarios that have already been decided with the active weight profile are answered from the decision cache
      * @param Scenario scenario: the ethical dilemma
      * @return Decision: which location to send RescueBot to
      */
     public static Location decide(Scenario scenario) {
-        //Reduce the likliness to save the people in the scenario if they have tresspassed
-        final double TRESSPASS_PENALITY = 0.5;    //1
-        final HashMap<String,Double> CHARACTERISTIC_VALUES = new HashMap<>();
-        //Pregnant Status
-        CHARACTERISTIC_VALUES.put("pregnant", 1.0);
-        //If the animal is a pet
-        CHARACTERISTIC_VALUES.put("pet", 0.75);
-        //The age category of the human
-        CHARACTERISTIC_VALUES.put("baby", 1.0);
-        CHARACTERISTIC_VALUES.put("child", 0.75);
-        CHARACTERISTIC_VALUES.put("adult", 0.5);
-        CHARACTERISTIC_VALUES.put("senior", 0.25);
-        //The body type
-        CHARACTERISTIC_VALUES.put("athletic", 1.0);
-        CHARACTERISTIC_VALUES.put("average", 0.5);
-        CHARACTERISTIC_VALUES.put("overweight", 0.25);
-        //Select professions should get priority
-        CHARACTERISTIC_VALUES.put("doctor", 1.0);
-        CHARACTERISTIC_VALUES.put("professor", 1.0);
-        CHARACTERISTIC_VALUES.put("engineer", 1.0);
-        CHARACTERISTIC_VALUES.put("lawyer", 1.0);
-        CHARACTERISTIC_VALUES.put("student", 0.8);
-        CHARACTERISTIC_VALUES.put("criminal", -1.0);
-        CHARACTERISTIC_VALUES.put("ceo", 0.7);
-        CHARACTERISTIC_VALUES.put("unemployed", -0.5);
+        Integer cachedDecision = decisionCache.get(scenario, activeProfile);
+        if (cachedDecision != null) {
+            return scenario.getLocation(cachedDecision);
+        }
+        Location savedLocation = decide(scenario, activeProfile);
+        decisionCache.put(scenario, activeProfile, scenario.getIndexOfLocation(savedLocation));
+        return savedLocation;
+    }
 
+    /**
+     * Scores every location of a scenario with a weight profile, without using the decision cache
+     * Used directly for freshly generated scenarios, which can never be in the cache
+     * @param scenario the ethical dilemma
+     * @param profile the weights to score the characters with
+     * @return which location to send RescueBot to
+     */
+    public static Location decide(Scenario scenario, WeightProfile profile) {
         int locationCount = scenario.getNumberOfLocations();
-        double[] likelinessToSave = new double[locationCount];
+        double[] weights = profile.getWeights();
+        double[][] featureCounts = new double[weights.length][locationCount];
+        boolean[] trespassing = new boolean[locationCount];
+        int[] descriptionIds = new int[DESCRIPTION_IDS];
         double maxLikelinessToSave = 0;
         int indexOfMaxLikelinessToSave = 0;
         
         //For each location
         for (int i = 0; i < locationCount; i++) {
             Location currentLocation = scenario.getLocation(i);
-            //For each character
+            //For each character, count the characteristics that have a weight
             for (int j = 0; j < currentLocation.getNumberOfCharacters(); j++) {
-                String[] attributes = currentLocation.getCharacter(j).toString().split(" ");
-                for (String characteristic : attributes) {
-                    if (CHARACTERISTIC_VALUES.containsKey(characteristic)) {
-                        likelinessToSave[i] += CHARACTERISTIC_VALUES.get(characteristic);
+                LivingBeing character = currentLocation.getCharacter(j);
+                if (character.getDescriptionIdCount() > descriptionIds.length) {
+                    descriptionIds = new int[character.getDescriptionIdCount()];
+                }
+                int words = character.getDescriptionIds(descriptionIds);
+                for (int k = 0; k < words; k++) {
+                    int feature = profile.getFeatureIndex(descriptionIds[k]);
+                    if (feature >= 0) {
+                        featureCounts[feature][i]++;
                     }
                 }
             }
-            if (currentLocation.getIllegalEntry()) {
-                likelinessToSave[i] = likelinessToSave[i] * TRESSPASS_PENALITY;
-            }
-            if (likelinessToSave[i] > maxLikelinessToSave) {
-                maxLikelinessToSave = likelinessToSave[i];
+            trespassing[i] = currentLocation.getIllegalEntry();
+            //Scored the same way as the scoring kernels, so a scenario gets the same decision on its own or in a batch
+            double likelinessToSave = ScalarScoringKernel.scoreLocation(featureCounts, trespassing, weights, profile.getTresspassPenality(), i);
+            if (likelinessToSave > maxLikelinessToSave) {
+                maxLikelinessToSave = likelinessToSave;
                 indexOfMaxLikelinessToSave = i;
             }
         }
         return scenario.getLocation(indexOfMaxLikelinessToSave);
     }
 
+    /**
+     * Decides a batch of scenarios with a weight profile, scoring their locations with the selected scoring kernel
+     * Gives the same decisions as deciding each scenario on its own, without using the decision cache
+     * @param scenarios the scenarios
+     * @param profile the weights to score the characters with
+     * @return the index of the location to send RescueBot to, for each scenario
+     */
+    public static int[] decideAll(List<Scenario> scenarios, WeightProfile profile) {
+        int[] savedLocations = new int[scenarios.size()];
+        new EncodedCorpus(scenarios, profile, false).decideAll(profile.getWeights(), profile.getTresspassPenality(), savedLocations);
+        return savedLocations;
+    }
+
+    /**
+     * @return the kernel that scores locations in batches
+     */
+    public static ScoringKernel getScoringKernel() {
+        return scoringKernel;
+    }
+
+    /**
+     * @return the weight profile used by the RescueBot
+     */
+    public static WeightProfile getActiveProfile() {
+        return activeProfile;
+    }
+
+    /**
+     * @return the cache of decisions made by the RescueBot, including its hit and miss counters
+     */
+    public static DecisionCache getDecisionCache() {
+        return decisionCache;
+    }
+
     /**
      * This functional is called when the program is started. 
      * Checks the arguments provided, via command-line, and then processes commands and checks for invalid commands
@@ -78,6 +125,11 @@ public class RescueBot {
     public static void main(String[] args) {
         File scenariosFile = null;
         String logPath = null;
+        File corpusFile = null;
+        long corpusCharacters = 0;
+        long seed = System.nanoTime();
+        String profilePath = null;
+        String trainedProfilePath = null;
 
         for(int i = 0; i < args.length; i++) {
             switch (args[i]) {
@@ -113,6 +165,108 @@ public class RescueBot {
                         printHelp();
                     }
                     break;
+                //Creates new log files as compressed blocks
+                case "-z":
+                case "--compress-log":
+                    CompressedLog.setCompressNewLogs(true);
+                    break;
+                //Checks arguments for the rolling statistics window
+                case "-w":
+                case "--window":
+                    if (i+1 < args.length) {
+                        setRollingWindow(args[++i]);
+                    } else {
+                        printHelp();
+                    }
+                    break;
+                //Skips the reports of bulk runs
+                case "-q":
+                case "--quiet":
+                    ReportRenderer.setQuiet(true);
+                    break;
+                //Adds diagnostics to the reports of bulk runs
+                case "-v":
+                case "--verbose":
+                    ReportRenderer.setVerbose(true);
+                    break;
+                //Selects the scoring kernel
+                case "-k":
+                case "--kernel":
+                    if (i+1 < args.length) {
+                        setScoringKernel(args[++i]);
+                    } else {
+                        printHelp();
+                    }
+                    break;
+                //Counts only the most frequent species
+                case "-b":
+                case "--bounded-species":
+                    if (i+1 < args.length) {
+                        StatisticsGenerator.setReportedSpecies((int) Math.min(parsePositiveNumber(args[++i]), MAX_REPORTED_SPECIES));
+                    } else {
+                        printHelp();
+                    }
+                    break;
+                //Loads the weights of the decision algorithm
+                case "-p":
+                case "--profile":
+                    if (i+1 < args.length) {
+                        profilePath = args[++i];
+                    } else {
+                        printHelp();
+                    }
+                    break;
+                //Learns the weights of the decision algorithm from the scenarios judged by users
+                case "-t":
+                case "--train":
+                    if (i+1 < args.length) {
+                        trainedProfilePath = args[++i];
+                    } else {
+                        printHelp();
+                    }
+                    break;
+                //Writes a synthetic scenarios file for load tests
+                case "-g":
+                case "--generate":
+                    if (i+2 < args.length) {
+                        corpusFile = new File(args[++i]);
+                        corpusCharacters = parsePositiveNumber(args[++i]);
+                    } else {
+                        printHelp();
+                    }
+                    break;
+                case "--seed":
+                    if (i+1 < args.length) {
+                        try {
+                            seed = Long.parseLong(args[++i]);
+                        } catch (NumberFormatException e) {
+                            printHelp();
+                        }
+                    } else {
+                        printHelp();
+                    }
+                    break;
+                case "--human-ratio":
+                    if (i+1 < args.length) {
+                        CorpusGenerator.setHumanRatio(parseRatio(args[++i]));
+                    } else {
+                        printHelp();
+                    }
+                    break;
+                case "--trespass-ratio":
+                    if (i+1 < args.length) {
+                        CorpusGenerator.setTrespassRatio(parseRatio(args[++i]));
+                    } else {
+                        printHelp();
+                    }
+                    break;
+                case "--pet-ratio":
+                    if (i+1 < args.length) {
+                        CorpusGenerator.setPetRatio(parseRatio(args[++i]));
+                    } else {
+                        printHelp();
+                    }
+                    break;
                 //A wrong argument is provded
                 default:
                     printHelp();
@@ -122,6 +276,17 @@ public class RescueBot {
 
         //At this point, it can be assumed that all the arguments have be processed and are valid according to specifications
 
+        if (corpusFile != null) {
+            generateCorpus(corpusFile, corpusCharacters, seed);
+            return;
+        }
+        if (profilePath != null) {
+            loadProfile(profilePath);
+        }
+        if (trainedProfilePath != null) {
+            trainProfile((logPath == null) ? MainMenu.DEFAULT_LOG_FILE : logPath, trainedProfilePath, seed);
+            return;
+        }
         if (scenariosFile != null && logPath == null) {
             new MainMenu(scenariosFile);
         } else if (scenariosFile != null && logPath != null) {
@@ -133,6 +298,167 @@ public class RescueBot {
         }
     }
 
+    /**
+     * Writes a synthetic scenarios file for load tests
+     * @param corpusFile the file to write
+     * @param characters the number of characters to generate
+     * @param seed the seed of the random numbers
+     */
+    private static void generateCorpus(File corpusFile, long characters, long seed) {
+        CorpusGenerator corpusGenerator = new CorpusGenerator(characters);
+        long start = System.currentTimeMillis();
+        try {
+            corpusGenerator.generate(corpusFile, seed);
+        } catch (IOException e) {
+            System.out.println("ERROR: could not write scenarios file. " + e.getMessage());
+            System.exit(1);
+        }
+        long elapsedMillis = Math.max(1, System.currentTimeMillis() - start);
+        System.out.printf("Generated %d scenarios (%.1f MB) to %s in %d ms with seed %d, %.1f MB/s\n", corpusGenerator.getScenariosWritten(),
+                corpusFile.length() / 1e6, corpusFile.getPath(), elapsedMillis, seed, corpusFile.length() / 1e3 / elapsedMillis);
+    }
+
+    /**
+     * Replaces the weights of the decision algorithm with a saved profile
+     * @param profilePath the path of the profile file
+     */
+    private static void loadProfile(String profilePath) {
+        try {
+            activeProfile = WeightProfile.loadProfile(profilePath);
+        } catch (FileNotFoundException e) {
+            System.out.println("java.io.FileNotFoundException: could not find profile file.");
+            printHelp();
+        } catch (InvalidDataFormatException e) {
+            System.out.println("ERROR: profile file is corrupted!");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Learns a profile from the scenarios judged by users, starting from the active profile, and saves it
+     * @param logPath the path of the log file
+     * @param trainedProfilePath where the trained profile is saved
+     * @param seed the seed of the order the scenarios are trained in
+     */
+    private static void trainProfile(String logPath, String trainedProfilePath, long seed) {
+        WeightTrainer weightTrainer = new WeightTrainer(activeProfile);
+        long start = System.currentTimeMillis();
+        try {
+            weightTrainer.readLogFile(logPath);
+        } catch (FileNotFoundException | EmptyFileException e) {
+            System.out.println("ERROR: could not read log file.");
+            System.exit(1);
+        }
+        if (weightTrainer.getScenarioCount() == 0) {
+            System.out.println("ERROR: no judged scenarios found in log file.");
+            System.exit(1);
+        }
+        weightTrainer.train(seed);
+        weightTrainer.printReport(System.currentTimeMillis() - start);
+        try {
+            weightTrainer.getTrainedProfile().saveProfile(trainedProfilePath);
+        } catch (FileNotFoundException e) {
+            System.out.println("ERROR: could not write profile file. " + e.getMessage());
+            System.exit(1);
+        }
+        System.out.println("Saved the trained profile to " + trainedProfilePath + ", load it with -p " + trainedProfilePath);
+    }
+
+    /**
+     * @param argument a number passed in via command-line
+     * @return the number, the help menu is printed if it isn't a positive whole number
+     */
+    private static long parsePositiveNumber(String argument) {
+        try {
+            long number = Long.parseLong(argument);
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            //Handled below
+        }
+        printHelp();
+        return 0;
+    }
+
+    /**
+     * @param argument a ratio passed in via command-line
+     * @return the ratio, the help menu is printed if it isn't between 0 and 1
+     */
+    private static double parseRatio(String argument) {
+        try {
+            double ratio = Double.parseDouble(argument);
+            if (ratio >= 0 && ratio <= 1) {
+                return ratio;
+            }
+        } catch (NumberFormatException e) {
+            //Handled below
+        }
+        printHelp();
+        return 0;
+    }
+
+    /**
+     * Enables the rolling statistics window, either as a number of scenarios (e.g. 100) or a number of minutes (e.g. 5m)
+     * @param windowArgument the window size passed in via command-line
+     */
+    private static void setRollingWindow(String windowArgument) {
+        try {
+            if (windowArgument.endsWith("m")) {
+                int minutes = Integer.parseInt(windowArgument.substring(0, windowArgument.length() - 1));
+                if (minutes <= 0) {
+                    throw new NumberFormatException();
+                }
+                StatisticsGenerator.setRollingWindowMinutes(minutes);
+            } else {
+                int scenarios = Integer.parseInt(windowArgument);
+                if (scenarios <= 0) {
+                    throw new NumberFormatException();
+                }
+                StatisticsGenerator.setRollingWindowScenarios(scenarios);
+            }
+        } catch (NumberFormatException e) {
+            printHelp();
+        }
+    }
+
+    /**
+     * Selects the kernel that scores locations in batches
+     * @param kernelArgument either scalar or vector, passed in via command-line
+     */
+    private static void setScoringKernel(String kernelArgument) {
+        switch (kernelArgument) {
+            case "scalar":
+                scoringKernel = new ScalarScoringKernel();
+                break;
+            case "vector":
+                scoringKernel = loadScoringKernel("vector", null);
+                if (scoringKernel == null) {
+                    System.out.println("ERROR: the vector kernel is not available. Compile and run with --add-modules jdk.incubator.vector.");
+                    System.exit(1);
+                }
+                break;
+            default:
+                printHelp();
+                break;
+        }
+    }
+
+    /**
+     * Loads a scoring kernel by name, the vector kernel is only compiled (and can only be loaded) when the Vector API module is added
+     * @param kernelName the name of the kernel
+     * @param fallback the kernel to use if it cannot be loaded
+     * @return the kernel, or the fallback
+     */
+    private static ScoringKernel loadScoringKernel(String kernelName, ScoringKernel fallback) {
+        String className = Character.toUpperCase(kernelName.charAt(0)) + kernelName.substring(1) + "ScoringKernel";
+        try {
+            return (ScoringKernel) Class.forName(className).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return fallback;
+        }
+    }
+
     /**
      * A helper function that prints out the help menu and then exits the program with an exit status of 1 (to indicate failure)
      */
@@ -143,6 +469,19 @@ public class RescueBot {
         System.out.println("-s or --scenarios\tOptional: path to scenario file");
         System.out.println("-h or --help\t\tOptional: Print Help (this message) and exit");
         System.out.println("-l or --log\t\tOptional: path to data log file");
+        System.out.println("-z or --compress-log\tOptional: write new log files as compressed blocks");
+        System.out.println("-w or --window\t\tOptional: also show statistics over the last N scenarios (or N minutes, e.g. 5m)");
+        System.out.println("-q or --quiet\t\tOptional: skip the statistics of bulk runs, which are still written to the log file");
+        System.out.println("-v or --verbose		Optional: also show how often the decision cache was hit in bulk runs");
+        System.out.println("-k or --kernel\t\tOptional: score locations with the scalar or vector kernel (default: vector if available)");
+        System.out.println("-b or --bounded-species\tOptional: count species in fixed memory and report only the N most frequent");
+        System.out.println("-p or --profile\t\tOptional: path to a weight profile for the decision algorithm");
+        System.out.println("-t or --train\t\tOptional: learn a weight profile from the judged scenarios in the log file, save it to a path and exit");
+        System.out.println("-g or --generate\tOptional: write a scenario file of N characters for load tests and exit, e.g. -g big.csv 10000000");
+        System.out.println("--seed\t\t\tOptional: seed of the generated scenario file or of the training order");
+        System.out.println("--human-ratio\t\tOptional: fraction of generated characters that are humans (default: 0.5)");
+        System.out.println("--trespass-ratio\tOptional: fraction of generated locations that were trespassed (default: 0.5)");
+        System.out.println("--pet-ratio\t\tOptional: fraction of generated dogs, cats and ferrets that are pets (default: 0.5)");
         System.exit(1);
     }
 }
\ No newline at end of file
@@ -0,0 +1,145 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import lib.AttributeDictionary;
+
+/**
+ * Survival ratios over only the most recent scenarios (or the most recent minutes) of a simulation or judging session
+ * The window is split into a ring of buckets, each counting the characters of a slice of the window.
+ * When the window moves past a bucket, its counts are subtracted from the window totals and the bucket is reused,
+ * so each update is O(1) and memory is bounded by the number of buckets. Species are open ended, so they are left out of the window
+ * @author Joshia Nambi
+ */
+public class RollingStatistics {
+
+    private final static int NUMBER_OF_BUCKETS = 10;
+    private final static long MILLIS_PER_MINUTE = 60000;
+
+    private boolean timeBased;
+    private long windowSize;        //Number of scenarios, or milliseconds when time based
+    private long bucketWidth;
+    private int[][][] buckets;      //[bucket] -> {saved[], total[]} indexed by attribute id
+    private long[] bucketIds;       //The slice of the window each bucket is currently counting
+    private int[] bucketScenarioCounts;
+    private int windowScenarioCount = 0;
+    private int[][] windowTotals;   //{saved[], total[]} indexed by attribute id
+    private long scenariosSeen = 0;     //Position of the next scenario when the window counts scenarios
+    private int currentBucket = -1;
+
+    private RollingStatistics(boolean timeBased, long windowSize) {
+        this.timeBased = timeBased;
+        this.windowSize = windowSize;
+        bucketWidth = Math.max(1, (windowSize + NUMBER_OF_BUCKETS - 1) / NUMBER_OF_BUCKETS);
+        buckets = new int[NUMBER_OF_BUCKETS][2][AttributeDictionary.getAttributeIdLimit()];
+        bucketIds = new long[NUMBER_OF_BUCKETS];
+        bucketScenarioCounts = new int[NUMBER_OF_BUCKETS];
+        Arrays.fill(bucketIds, -1);
+        windowTotals = new int[2][AttributeDictionary.getAttributeIdLimit()];
+    }
+
+    /**
+     * @param scenarios the number of most recent scenarios to report on
+     * @return statistics over the last scenarios
+     */
+    public static RollingStatistics overScenarios(int scenarios) {
+        return new RollingStatistics(false, scenarios);
+    }
+
+    /**
+     * @param minutes the number of most recent minutes to report on
+     * @return statistics over the last minutes
+     */
+    public static RollingStatistics overMinutes(int minutes) {
+        return new RollingStatistics(true, minutes * MILLIS_PER_MINUTE);
+    }
+
+    /**
+     * Called before the characters of a new scenario are recorded, moving the window forward if needed
+     */
+    public void startScenario() {
+        long position = timeBased ? System.currentTimeMillis() : scenariosSeen;
+        scenariosSeen++;
+        long bucketId = position / bucketWidth;
+        int ringIndex = (int) (bucketId % NUMBER_OF_BUCKETS);
+        if (bucketIds[ringIndex] != bucketId) {
+            evictBucket(ringIndex);
+            bucketIds[ringIndex] = bucketId;
+        }
+        currentBucket = ringIndex;
+        bucketScenarioCounts[ringIndex]++;
+        windowScenarioCount++;
+    }
+
+    /**
+     * Counts a character with an attribute as saved or perished in the current bucket
+     * @param attributeId the id of the attribute of the character
+     * @param survived if the character survived
+     */
+    public void record(int attributeId, boolean survived) {
+        if (currentBucket < 0) {
+            startScenario();
+        }
+        int[][] bucketCounts = buckets[currentBucket];
+        if (survived) {
+            bucketCounts[0][attributeId]++;
+            windowTotals[0][attributeId]++;
+        }
+        bucketCounts[1][attributeId]++;
+        windowTotals[1][attributeId]++;
+    }
+
+    /**
+     * Renders the statistics of the rolling window into a report, in the same format as the overall statistics
+     * @param renderer the report being built
+     */
+    public void renderStatistics(ReportRenderer renderer) {
+        if (timeBased) {
+            expireOldBuckets();
+            renderer.append("- % SAVED AFTER ").append(windowScenarioCount).append(" RUNS IN THE LAST ").append(windowSize / MILLIS_PER_MINUTE).line(" MINUTES");
+        } else {
+            renderer.append("- % SAVED IN THE LAST ").append(windowScenarioCount).line(" RUNS");
+        }
+        ArrayList<Pair> windowStatistics = new ArrayList<>();
+        for (int id = 0; id < windowTotals[1].length; id++) {
+            if (windowTotals[1][id] > 0) {
+                windowStatistics.add(new Pair(AttributeDictionary.getLabel(id), windowTotals[0][id], windowTotals[1][id]));
+            }
+        }
+        Collections.sort(windowStatistics, (new PairComparator()));
+        for (Pair pair : windowStatistics) {
+            if (StatisticsGenerator.isReportedAttribute(pair.getAttribute())) {
+                renderer.ratioLine(pair.getAttribute(), pair.getSurvivalRatio());
+            }
+        }
+    }
+
+    /**
+     * Evicts the buckets that time has moved out of the window, even if no scenario has reused them yet
+     */
+    private void expireOldBuckets() {
+        long oldestBucketId = System.currentTimeMillis() / bucketWidth - NUMBER_OF_BUCKETS + 1;
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            if (bucketIds[i] >= 0 && bucketIds[i] < oldestBucketId) {
+                evictBucket(i);
+                bucketIds[i] = -1;
+            }
+        }
+    }
+
+    /**
+     * Removes the counts of a bucket from the window totals and empties it
+     * @param ringIndex the bucket to evict
+     */
+    private void evictBucket(int ringIndex) {
+        int[][] bucket = buckets[ringIndex];
+        for (int id = 0; id < bucket[1].length; id++) {
+            windowTotals[0][id] -= bucket[0][id];
+            windowTotals[1][id] -= bucket[1][id];
+        }
+        Arrays.fill(bucket[0], 0);
+        Arrays.fill(bucket[1], 0);
+        windowScenarioCount -= bucketScenarioCounts[ringIndex];
+        bucketScenarioCounts[ringIndex] = 0;
+    }
+}
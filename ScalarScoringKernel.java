@@ -0,0 +1,30 @@
+/**
+ * Scores one location at a time, adding the weighted feature counts in feature order
+ * This is the reference every other scoring kernel has to match
+ * @author Joshia Nambi
+ */
+public class ScalarScoringKernel implements ScoringKernel {
+
+    @Override
+    public void score(double[][] featureCounts, boolean[] trespassing, double[] weights, double tresspassPenality, int from, int to, double[] scores) {
+        for (int location = from; location < to; location++) {
+            scores[location - from] = scoreLocation(featureCounts, trespassing, weights, tresspassPenality, location);
+        }
+    }
+
+    /**
+     * Scores a single location
+     * @return the likeliness to save the location
+     */
+    public static double scoreLocation(double[][] featureCounts, boolean[] trespassing, double[] weights, double tresspassPenality, int location) {
+        double likelinessToSave = 0;
+        for (int f = 0; f < featureCounts.length; f++) {
+            likelinessToSave += featureCounts[f][location] * weights[f];
+        }
+        if (trespassing[location]) {
+            //Reduce the likliness to save the people in the scenario if they have tresspassed
+            likelinessToSave *= tresspassPenality;
+        }
+        return likelinessToSave;
+    }
+}
@@ -1,8 +1,5 @@
 import java.util.ArrayList;
 
-import lib.exceptions.InvalidCharacteristicException;
-
-
 /**
  * A class that represents a particular scenario
  * @author Joshia Nambi
@@ -14,6 +11,9 @@ public class Scenario {
     private final static String[] GENERATED_DISASTER_NAMES = {"flood", "cyclone", "earthquake", "bushfire", "tsunami", "tornado"}; 
     private final static int MIN_LOCATIONS_GENERATED = 2;
     private final static int MAX_LOCATIONS_GENERATED = 4;   
+    private final static long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private final static long FNV_PRIME = 0x100000001b3L;
+    private long fingerprint;                   //Cached content hash, 0 when it needs to be recalculated
 
     /**
      * Contructor to randomly generate a scenario with a random number of locations
@@ -44,18 +44,28 @@ public class Scenario {
      * @param rawLocationData Data from scenarios file indicating the longitude, latitude and tresspassing status
      */
     public void addLocation(String rawLocationData) {
+        fingerprint = 0;
         String[] locationData = rawLocationData.split(";");
         disasterLocations.add(new Location(locationData[0], locationData[1], locationData[2]));
     }
 
+    /**
+     * Add an already constructed location to this scenario
+     * @param location the location to add
+     */
+    public void addLocation(Location location) {
+        fingerprint = 0;
+        disasterLocations.add(location);
+    }
+
     /**
      * Add a character to the previously added Location
      * @param rawCharacterData data from the scenarios file
-     * @throws NumberFormatException
-     * @throws InvalidCharacteristicException
+     * @return LivingBeing.VALID if the character was added, otherwise the status returned by Location.addCharacterToLocation
      */
-    public void addCharacter(String[] rawCharacterData) throws NumberFormatException, InvalidCharacteristicException {
-        disasterLocations.get(disasterLocations.size() - 1).addCharacterToLocation(rawCharacterData);
+    public int addCharacter(String[] rawCharacterData) {
+        fingerprint = 0;
+        return disasterLocations.get(disasterLocations.size() - 1).addCharacterToLocation(rawCharacterData);
     } 
     
     public Location getLocation(int i) {
@@ -66,19 +76,61 @@ public class Scenario {
         return disasterLocations.indexOf(loc);
     }
 
+    /**
+     * Calculates a canonical hash (64-bit FNV-1a) of the content of this scenario: the disaster, then every location in order with its characters
+     * Two scenarios with the same fingerprint are the same dilemma, regardless of whether they were imported, generated or read from the logfile
+     * @return the fingerprint of this scenario
+     */
+    public long getFingerprint() {
+        if (fingerprint == 0) {
+            long hash = hashString(FNV_OFFSET_BASIS, naturalDisaster);
+            for (Location location : disasterLocations) {
+                hash = hashString(hash, "|" + location.getLatitude() + ";" + location.getLongitude() + ";" + location.getIllegalEntry());
+                for (int i = 0; i < location.getNumberOfCharacters(); i++) {
+                    hash = hashString(hash, "\n" + location.getCharacter(i).getCSVFormat());
+                }
+            }
+            //0 is reserved to mean "not calculated yet"
+            fingerprint = (hash == 0) ? 1 : hash;
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Adds the characters of a string to a FNV-1a hash
+     * @param hash the hash so far
+     * @param str the string to add
+     * @return the updated hash
+     */
+    private static long hashString(long hash, String str) {
+        for (int i = 0; i < str.length(); i++) {
+            hash ^= str.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
     /**
      * Prints the current scenario to the console
      */
     public void printScenario() {
-        System.out.println("======================================");
-        System.out.println("# Scenario: " + naturalDisaster);
-        System.out.println("======================================");
+        ReportRenderer renderer = ReportRenderer.getConsole();
+        renderScenario(renderer);
+        renderer.flush();
+    }
+
+    /**
+     * Renders the current scenario into a report
+     * @param renderer the report being built
+     */
+    public void renderScenario(ReportRenderer renderer) {
+        renderer.title("Scenario: " + naturalDisaster);
 
         for (int i = 0; i < disasterLocations.size(); i++) {
-            System.out.printf("[%d] Location: ", i+1);
-            System.out.println(disasterLocations.get(i).getCoordinatesToString());
-            System.out.println(disasterLocations.get(i).getEntryStatusToString());
-            System.out.print(disasterLocations.get(i).getCharactersToString());
+            renderer.append("[").append(i+1).append("] Location: ");
+            renderer.line(disasterLocations.get(i).getCoordinatesToString());
+            renderer.line(disasterLocations.get(i).getEntryStatusToString());
+            disasterLocations.get(i).appendCharacters(renderer.getBuffer());
         }
     }
 
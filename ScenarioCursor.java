@@ -0,0 +1,202 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Scanner;
+
+/**
+ * A position in a scenarios file that judge sessions resume from, stored next to the file as <scenarios file>.cursor
+ * Scenarios are streamed from the file a few at a time, starting at the byte offset of the first scenario that hasn't been judged.
+ * The cursor stores that offset and the number of scenarios judged before it, and goes back to the start once the file is finished.
+ * Moving the cursor doesn't save it, so a position can be saved only once the scenarios judged before it are logged
+ * @author Joshia Nambi
+ */
+public class ScenarioCursor {
+
+    private final static String CURSOR_EXTENSION = ".cursor";
+    private final static int READ_BUFFER_SIZE = 65536;
+    private final static String SCENARIO_PREFIX = "scenario:";
+
+    private File scenariosFile;
+    private File cursorFile;
+    private long offset = 0;                //Byte offset of the 'scenario:' line of the next scenario to judge, 0 before the first
+    private int judgedCount = 0;            //Number of scenarios judged before the offset
+    private long[] readEnds = new long[0];  //Byte offset just after each scenario returned by the last read
+
+    /**
+     * Loads the cursor of a scenarios file, a missing or out of date cursor starts at the beginning of the file
+     * @param scenariosFile the scenarios file to judge
+     */
+    public ScenarioCursor(File scenariosFile) {
+        this.scenariosFile = scenariosFile;
+        this.cursorFile = new File(scenariosFile.getPath() + CURSOR_EXTENSION);
+        try (Scanner cursorReader = new Scanner(cursorFile)) {
+            String[] lineArray = cursorReader.nextLine().split(",");
+            offset = Long.parseLong(lineArray[0]);
+            judgedCount = Integer.parseInt(lineArray[1]);
+        } catch (FileNotFoundException | RuntimeException e) {
+            offset = 0;
+            judgedCount = 0;
+        }
+        //The file was replaced or edited if the offset no longer starts a scenario
+        if (offset != 0 && !startsScenario(offset)) {
+            offset = 0;
+            judgedCount = 0;
+        }
+    }
+
+    /**
+     * Copies a cursor, so a session whose decisions are not logged can move through the file without moving the cursor it started from
+     * @param cursor the cursor to start from
+     */
+    public ScenarioCursor(ScenarioCursor cursor) {
+        this.scenariosFile = cursor.scenariosFile;
+        this.cursorFile = cursor.cursorFile;
+        this.offset = cursor.offset;
+        this.judgedCount = cursor.judgedCount;
+    }
+
+    /**
+     * Streams in the next scenarios to judge, without moving the cursor
+     * @param count the maximum number of scenarios
+     * @return the scenarios, empty once every scenario of the file has been judged
+     */
+    public ArrayList<Scenario> readScenarios(int count) {
+        ArrayList<Scenario> scenarios = new ArrayList<>();
+        readEnds = new long[count];
+        //The lines have already been checked when the file was opened, so warnings aren't repeated
+        ScenarioImporter importer = new ScenarioImporter(scenarios);
+        try (RandomAccessFile scenarioReader = new RandomAccessFile(scenariosFile, "r")) {
+            scenarioReader.seek(offset);
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long lineStart = offset;
+            long position = offset;
+            int read;
+            while ((read = scenarioReader.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++, position++) {
+                    if (buffer[i] != '\n') {
+                        line.write(buffer[i]);
+                        continue;
+                    }
+                    if (!parseLine(importer, scenarios, line, lineStart, count)) {
+                        return scenarios;
+                    }
+                    line.reset();
+                    lineStart = position + 1;
+                }
+            }
+            //The last line of the file may not end with a newline
+            if (line.size() > 0 && !parseLine(importer, scenarios, line, lineStart, count)) {
+                return scenarios;
+            }
+            if (!scenarios.isEmpty()) {
+                readEnds[scenarios.size() - 1] = position;
+            }
+        } catch (IOException e) {
+            //Only the scenarios read so far are judged
+        }
+        return scenarios;
+    }
+
+    /**
+     * Moves the cursor past scenarios returned by the last read
+     * @param judged the number of scenarios that were judged, from the start of the last read
+     */
+    public void advance(int judged) {
+        if (judged == 0) {
+            return;
+        }
+        offset = readEnds[judged - 1];
+        judgedCount += judged;
+    }
+
+    /**
+     * @return true if there is at least one scenario after the cursor
+     */
+    public boolean hasMoreScenarios() {
+        return !readScenarios(1).isEmpty();
+    }
+
+    /**
+     * Moves the cursor back to the start of the file, so the next session judges every scenario again
+     */
+    public void reset() {
+        offset = 0;
+        judgedCount = 0;
+    }
+
+    /**
+     * Captures the current position of the cursor, to be saved for the next session later (e.g. once the judged scenarios are logged)
+     * @return a task that saves the position, it can be run on any thread
+     */
+    public Runnable savePosition() {
+        File file = cursorFile;
+        String position = offset + "," + judgedCount;
+        return () -> save(file, position);
+    }
+
+    /**
+     * @return the number of scenarios of the file judged before the cursor
+     */
+    public int getJudgedCount() {
+        return judgedCount;
+    }
+
+    /**
+     * Parses one line of the file, recording where the previous scenario ended when a new scenario starts
+     * @return false once the line starts a scenario after the last one that was asked for, the line is then not parsed
+     */
+    private boolean parseLine(ScenarioImporter importer, ArrayList<Scenario> scenarios, ByteArrayOutputStream line, long lineStart, int count) {
+        String lineString = new String(line.toByteArray(), Charset.defaultCharset());
+        if (lineString.endsWith("\r")) {
+            lineString = lineString.substring(0, lineString.length() - 1);
+        }
+        if (lineString.startsWith(SCENARIO_PREFIX)) {
+            if (!scenarios.isEmpty()) {
+                readEnds[scenarios.size() - 1] = lineStart;
+            }
+            if (scenarios.size() == count) {
+                return false;
+            }
+        }
+        importer.parseLine(lineString);
+        return true;
+    }
+
+    /**
+     * @param position a byte offset in the scenarios file, after its first line
+     * @return true if a 'scenario:' line starts at the offset
+     */
+    private boolean startsScenario(long position) {
+        //The newline that ends the previous line, followed by the prefix
+        byte[] start = new byte[SCENARIO_PREFIX.length() + 1];
+        try (RandomAccessFile scenarioReader = new RandomAccessFile(scenariosFile, "r")) {
+            if (position < 1 || position + SCENARIO_PREFIX.length() > scenarioReader.length()) {
+                return false;
+            }
+            scenarioReader.seek(position - 1);
+            scenarioReader.readFully(start);
+        } catch (IOException e) {
+            return false;
+        }
+        return new String(start, Charset.defaultCharset()).equals("\n" + SCENARIO_PREFIX);
+    }
+
+    /**
+     * Writes a position to the cursor file
+     * @param cursorFile the cursor file of the scenarios file
+     * @param position the byte offset and the number of scenarios judged before it
+     */
+    private static void save(File cursorFile, String position) {
+        try (PrintWriter cursorWriter = new PrintWriter(cursorFile)) {
+            cursorWriter.println(position);
+        } catch (FileNotFoundException e) {
+            //Sessions start from the beginning of the file when the cursor cannot be saved
+        }
+    }
+}
@@ -0,0 +1,249 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the imported scenarios file for lines appended while the program is running
+ * Only the bytes after the last read offset are read, once the file has been quiet for a short while. The trailing scenario block
+ * is held back until a blank line or the next 'scenario:' line closes it, or the file has settled, so a block that is still being
+ * written is not handed out half way. The lines wait here until the menu parses them with the importer of the file, so lines that
+ * continue the last imported scenario (or a block that was handed out earlier) are added to that scenario
+ * @author Joshia Nambi
+ */
+public class ScenarioFileWatcher {
+
+    private final static long DEBOUNCE_MILLIS = 250;   //How long the file has to be quiet before appended lines are parsed
+    private final static long SETTLE_MILLIS = 2000;    //How long the file has to be quiet before its last scenario block is parsed
+    private final static byte[] SCENARIO_PREFIX = "scenario:".getBytes();
+
+    private File scenariosFile;
+    private long importedLength;                //Byte offset just after the part of the file the importer parsed
+    private long parsedOffset;                  //Byte offset just after the last complete line that was read
+    private boolean endsWithoutNewline;         //Whether the imported part of the file ended without a newline
+    private ArrayList<String> pendingLines;
+    private WatchService watchService;
+
+    /**
+     * Starts watching the scenarios file on a background thread
+     * @param scenariosFile the imported scenarios file
+     * @param importedLength the number of bytes of the file that the importer parsed
+     * @throws IOException thrown when the file's directory cannot be watched
+     */
+    public ScenarioFileWatcher(File scenariosFile, long importedLength) throws IOException {
+        this.scenariosFile = scenariosFile;
+        this.importedLength = importedLength;
+        this.parsedOffset = importedLength;
+        this.endsWithoutNewline = importedLength > 0 && !endsWithNewline(importedLength);
+        this.pendingLines = new ArrayList<>();
+        Path directory = scenariosFile.getAbsoluteFile().toPath().getParent();
+        watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+        Thread watcherThread = new Thread(this::watch, "rescuebot-scenario-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+    }
+
+    /**
+     * Hands over the complete lines appended since the last call
+     * @return the lines, in the order they were appended (blank lines included, they close a scenario block)
+     */
+    public synchronized ArrayList<String> takeAppendedLines() {
+        ArrayList<String> appendedLines = new ArrayList<>(pendingLines);
+        pendingLines.clear();
+        return appendedLines;
+    }
+
+    /**
+     * @return the number of lines in the part of the file that was imported, so warnings show their line number in the whole file
+     */
+    public int countImportedLines() {
+        return countLines(importedLength);
+    }
+
+    /**
+     * Waits for changes to the scenarios file, and parses the appended lines once the changes have settled
+     */
+    private void watch() {
+        String fileName = scenariosFile.getName();
+        boolean changed = false;
+        boolean holdingLastBlock = false;
+        try {
+            while (true) {
+                WatchKey key;
+                if (changed) {
+                    key = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+                } else if (holdingLastBlock) {
+                    key = watchService.poll(SETTLE_MILLIS - DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+                } else {
+                    key = watchService.take();
+                }
+                if (key == null) {
+                    //Quiet for the whole debounce period, or long enough for the last block to have settled
+                    holdingLastBlock = readAppendedLines(!changed);
+                    changed = false;
+                    continue;
+                }
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.context() instanceof Path && ((Path) event.context()).getFileName().toString().equals(fileName)) {
+                        changed = true;
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            //The program is exiting
+        }
+    }
+
+    /**
+     * Reads the complete lines appended after the read offset into the pending lines
+     * @param includeLastBlock true to also hand out the open scenario block that ends the file
+     * @return true if the last scenario block was held back
+     */
+    private boolean readAppendedLines(boolean includeLastBlock) {
+        byte[] appended;
+        try (RandomAccessFile reader = new RandomAccessFile(scenariosFile, "r")) {
+            long length = reader.length();
+            if (length < parsedOffset) {
+                //The file was replaced or truncated rather than appended to, start over from its current end
+                parsedOffset = length;
+                return false;
+            }
+            appended = new byte[(int) Math.min(length - parsedOffset, Integer.MAX_VALUE - 8)];
+            reader.seek(parsedOffset);
+            reader.readFully(appended);
+        } catch (IOException e) {
+            //The file is being replaced, try again on the next change
+            return false;
+        }
+        //A line without its newline is still being written, so it is left for the next change
+        int end = appended.length;
+        while (end > 0 && appended[end - 1] != '\n') {
+            end--;
+        }
+        boolean holdingLastBlock = false;
+        if (!includeLastBlock) {
+            int openBlockStart = findOpenBlock(appended, end);
+            holdingLastBlock = openBlockStart < end;
+            end = openBlockStart;
+        }
+        if (end == 0) {
+            return holdingLastBlock;
+        }
+        String[] lines = new String(appended, 0, end, Charset.defaultCharset()).split("\r?\n", -1);
+        //A newline appended after the imported part of the file ends its last line, rather than being an empty line
+        int firstLine = (endsWithoutNewline && lines[0].isEmpty()) ? 1 : 0;
+        endsWithoutNewline = false;
+        synchronized (this) {
+            //The text ends with a newline, so the last element is always empty
+            for (int i = firstLine; i < lines.length - 1; i++) {
+                pendingLines.add(lines[i]);
+            }
+        }
+        parsedOffset += end;
+        return holdingLastBlock;
+    }
+
+    /**
+     * Finds where the open scenario block at the end of the text starts: the last line that closes the block before it,
+     * a 'scenario:' line (which starts the open block) or a blank line (after which the open block starts)
+     * Lines before any closing line continue the block that was open before the text, so they are held back too
+     * @param text the appended text
+     * @param end the end of the complete lines in the text
+     * @return the start of the open block, or end if the text ends with a blank line
+     */
+    private static int findOpenBlock(byte[] text, int end) {
+        for (int lineStart = end - 1; lineStart >= 0; lineStart--) {
+            if (lineStart == 0 || text[lineStart - 1] == '\n') {
+                if (startsWith(text, lineStart, SCENARIO_PREFIX)) {
+                    return lineStart;
+                }
+                if (isBlankLine(text, lineStart, end)) {
+                    return nextLineStart(text, lineStart, end);
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return true if the line starting at a position is empty, allowing for a carriage return
+     */
+    private static boolean isBlankLine(byte[] text, int lineStart, int end) {
+        int position = lineStart;
+        if (position < end && text[position] == '\r') {
+            position++;
+        }
+        return position < end && text[position] == '\n';
+    }
+
+    private static int nextLineStart(byte[] text, int lineStart, int end) {
+        int position = lineStart;
+        while (position < end && text[position] != '\n') {
+            position++;
+        }
+        return position + 1;
+    }
+
+    private static boolean startsWith(byte[] text, int position, byte[] prefix) {
+        if (position + prefix.length > text.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (text[position + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param length the number of bytes at the start of the file
+     * @return true if the last of those bytes is a newline
+     */
+    private boolean endsWithNewline(long length) {
+        try (RandomAccessFile reader = new RandomAccessFile(scenariosFile, "r")) {
+            reader.seek(length - 1);
+            return reader.read() == '\n';
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * @param length the number of bytes at the start of the file to count
+     * @return the number of lines in the first bytes of the file
+     */
+    private int countLines(long length) {
+        int lines = 0;
+        byte[] buffer = new byte[65536];
+        try (RandomAccessFile reader = new RandomAccessFile(scenariosFile, "r")) {
+            long remaining = length;
+            while (remaining > 0) {
+                int read = reader.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        lines++;
+                    }
+                }
+                remaining -= read;
+            }
+        } catch (IOException e) {
+            //Only the line numbers of warnings are affected
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,220 @@
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+
+import lib.LivingBeing;
+
+/**
+ * Parses the lines of a scenarios file into scenarios, without using exceptions for invalid data
+ * Invalid characteristics are replaced with their default value, and the line is validated again until it is accepted.
+ * The warnings are collected and printed as one report once the file has been read
+ * @author Joshia Nambi
+ */
+public class ScenarioImporter {
+
+    //The default values for character attributes, by column number
+    private final static String[] DEFAULTS = {null, "unknown", "0", "unspecified", "none", "false", null, "false"};
+    private final static int AGE = 2;
+    private final static int NUMBER_OF_COLUMNS = 8;
+    private final static int READ_BUFFER_SIZE = 65536;
+
+    private final static String INVALID_DATA_FORMAT = "WARNING: invalid data format in scenarios file in line ";
+    private final static String INVALID_NUMBER_FORMAT = "WARNING: invalid number format in scenarios file in line ";
+    private final static String INVALID_CHARACTERISTIC = "WARNING: invalid characteristic in scenarios file in line ";
+
+    private ArrayList<Scenario> scenarios;
+    private boolean keepScenarios = true;       //False to only keep the scenario being parsed, while a file is just checked
+    private int droppedScenarios = 0;           //Scenarios that were parsed and dropped when scenarios aren't kept
+    private int lineNumber = 0;
+    private int warningCount = 0;
+    private ReportRenderer warnings;
+
+    /**
+     * @param scenarios the list the imported scenarios are added to
+     */
+    public ScenarioImporter(ArrayList<Scenario> scenarios) {
+        this(scenarios, 0);
+    }
+
+    /**
+     * Imports lines that continue a file which has partly been imported already
+     * @param scenarios the list the imported scenarios are added to
+     * @param linesAlreadyRead the number of lines before the first line this importer parses
+     */
+    public ScenarioImporter(ArrayList<Scenario> scenarios, int linesAlreadyRead) {
+        this.scenarios = scenarios;
+        this.lineNumber = linesAlreadyRead;
+        this.warnings = new ReportRenderer(System.out);
+    }
+
+    /**
+     * Parses the next line of the scenarios file
+     *  > Lines without 8 columns are skipped with a warning
+     *  > Invalid ages and characteristics are set to a default value with a warning
+     * @param lineString the line
+     */
+    public void parseLine(String lineString) {
+        lineNumber++;
+        // Make sure there are 8 Columns in the row
+        if (countCommas(lineString) != NUMBER_OF_COLUMNS - 1) {
+            addWarning(INVALID_DATA_FORMAT);
+            return;
+        }
+        // Converts the line to an array
+        String[] lineArray = lineString.split(",", NUMBER_OF_COLUMNS);
+        // Skips the header line
+        if (lineArray[0].length() == 0) {
+            return;
+        }
+        // Makes a new scenario object and adds it to the scenarios arraylist
+        else if (lineArray[0].startsWith("scenario:")) {
+            if (!keepScenarios && !scenarios.isEmpty()) {
+                scenarios.clear();
+                droppedScenarios++;
+            }
+            scenarios.add(new Scenario(lineArray[0].substring(9)));
+        }
+        // Locations and characters need a scenario to be added to
+        else if (scenarios.isEmpty()) {
+            addWarning(INVALID_DATA_FORMAT);
+        }
+        // Adds a location to the previously added scenario
+        else if (lineArray[0].startsWith("location:")) {
+            scenarios.get(scenarios.size() - 1).addLocation(lineArray[0].substring(9));
+        }
+        // Once all other checks are done, the characters are added to the previously added scenario (and in turn the previously added location)
+        else {
+            Scenario scenario = scenarios.get(scenarios.size() - 1);
+            int status = scenario.addCharacter(lineArray);
+            while (status != LivingBeing.VALID) {
+                if (status == Location.INVALID_NUMBER_FORMAT) {
+                    addWarning(INVALID_NUMBER_FORMAT);
+                    lineArray[AGE] = DEFAULTS[AGE];
+                } else {
+                    addWarning(INVALID_CHARACTERISTIC);
+                    if (status < 0 || status >= DEFAULTS.length || DEFAULTS[status] == null) {
+                        return;
+                    }
+                    lineArray[status] = DEFAULTS[status];
+                }
+                status = scenario.addCharacter(lineArray);
+            }
+        }
+    }
+
+    /**
+     * Parses every line of a scenarios file, counting the bytes that were read so lines appended later can be picked up after them
+     * @param scenariosFile the scenarios file
+     * @return the number of bytes of the file that were parsed
+     * @throws FileNotFoundException thrown when the file cannot be found
+     */
+    public long importFile(File scenariosFile) throws FileNotFoundException {
+        long parsedLength = 0;
+        try (InputStream scenarioReader = new FileInputStream(scenariosFile)) {
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int read;
+            while ((read = scenarioReader.read(buffer)) > 0) {
+                int lineStart = 0;
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        line.write(buffer, lineStart, i - lineStart);
+                        parseLine(line);
+                        line.reset();
+                        lineStart = i + 1;
+                    }
+                }
+                line.write(buffer, lineStart, read - lineStart);
+                parsedLength += read;
+            }
+            //The last line of the file may not end with a newline
+            if (line.size() > 0) {
+                parseLine(line);
+            }
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            //Only the lines read so far are imported
+        }
+        return parsedLength;
+    }
+
+    /**
+     * Checks every line of a scenarios file and counts its scenarios without keeping them, so it can be checked in constant memory
+     * The warnings are collected as they are when the file is imported
+     * @param scenariosFile the scenarios file
+     * @return the number of scenarios in the file
+     * @throws FileNotFoundException thrown when the file cannot be found
+     */
+    public int checkFile(File scenariosFile) throws FileNotFoundException {
+        keepScenarios = false;
+        importFile(scenariosFile);
+        int scenarioCount = droppedScenarios + scenarios.size();
+        scenarios.clear();
+        return scenarioCount;
+    }
+
+    /**
+     * Counts a line without parsing it, e.g. a blank line that only closes a block of appended scenarios
+     */
+    public void skipLine() {
+        lineNumber++;
+    }
+
+    /**
+     * @return true if any line of the file needed a warning
+     */
+    public boolean hasWarnings() {
+        return warningCount > 0;
+    }
+
+    /**
+     * Forgets the warnings collected so far, when they have already been shown
+     */
+    public void discardWarnings() {
+        warnings.getBuffer().setLength(0);
+    }
+
+    /**
+     * Prints every warning collected so far as one report
+     */
+    public void printWarnings() {
+        warnings.flush();
+    }
+
+    /**
+     * Parses a line read as bytes, in the charset the scenarios file is read in
+     */
+    private void parseLine(ByteArrayOutputStream line) {
+        String lineString = new String(line.toByteArray(), Charset.defaultCharset());
+        if (lineString.endsWith("\r")) {
+            lineString = lineString.substring(0, lineString.length() - 1);
+        }
+        parseLine(lineString);
+    }
+
+    private void addWarning(String warning) {
+        warningCount++;
+        warnings.append(warning).append(lineNumber).line("");
+    }
+
+    /**
+     * Counts the number of commas (,) in an expression
+     * @param expression the string where the commas should be counted
+     * @return number of commas counted
+     */
+    private static int countCommas(String expression) {
+        int count = 0;
+        for (int i = 0; i < expression.length(); i++) {
+            if (expression.charAt(i) == ',') {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,263 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+import lib.*;
+
+/**
+ * A validated binary copy of an imported scenarios file, stored next to the file as <scenarios file>.snapshot
+ * The snapshot is keyed by the size, modification time and CRC32 of the scenarios file, so it is only used while the file is unchanged
+ * @author Joshia Nambi
+ */
+public class ScenarioSnapshot {
+
+    private final static int MAGIC = 0x52425353;    //"RBSS"
+    private final static int VERSION = 1;
+    private final static String SNAPSHOT_EXTENSION = ".snapshot";
+    private final static long MAPPED_WINDOW_SIZE = 1 << 30;     //A mapping is limited to 2 GB, so larger snapshots are read through windows
+
+    private final static byte HUMAN = 0;
+    private final static byte ANIMAL = 1;
+
+    /**
+     * Reads a snapshot through a memory mapped window that is moved forward whenever a value would cross its end
+     */
+    private static class SnapshotReader {
+        private FileChannel channel;
+        private ByteBuffer window = ByteBuffer.allocate(0);
+        private long windowStart = 0;       //Position of the window in the snapshot
+
+        private SnapshotReader(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private int getInt() throws IOException {
+            return ensure(Integer.BYTES).getInt();
+        }
+
+        private long getLong() throws IOException {
+            return ensure(Long.BYTES).getLong();
+        }
+
+        private byte get() throws IOException {
+            return ensure(1).get();
+        }
+
+        private String getString() throws IOException {
+            int length = getInt();
+            if (length < 0) {
+                throw new BufferUnderflowException();
+            }
+            byte[] bytes = new byte[length];
+            ensure(length).get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Maps the next window of the snapshot if fewer than the given number of bytes are left in the window
+         * @return the window
+         */
+        private ByteBuffer ensure(int bytes) throws IOException {
+            if (window.remaining() < bytes) {
+                long position = windowStart + window.position();
+                long size = Math.min(MAPPED_WINDOW_SIZE, channel.size() - position);
+                if (size < bytes) {
+                    throw new BufferUnderflowException();
+                }
+                window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                windowStart = position;
+            }
+            return window;
+        }
+    }
+
+    /**
+     * @param scenariosFile the imported scenarios file
+     * @return the snapshot file belonging to the scenarios file
+     */
+    public static File getSnapshotFile(File scenariosFile) {
+        return new File(scenariosFile.getPath() + SNAPSHOT_EXTENSION);
+    }
+
+    /**
+     * Loads the scenarios from the snapshot of the scenarios file, without tokenizing or validating the csv
+     * @param scenariosFile the scenarios file that was passed to the RescueBot program
+     * @return the scenarios, or null if there is no snapshot that matches the current contents of the scenarios file
+     */
+    public static ArrayList<Scenario> load(File scenariosFile) {
+        File snapshotFile = getSnapshotFile(scenariosFile);
+        if (!snapshotFile.exists() || snapshotFile.lastModified() < scenariosFile.lastModified()) {
+            return null;
+        }
+        try (RandomAccessFile snapshot = new RandomAccessFile(snapshotFile, "r")) {
+            SnapshotReader buffer = new SnapshotReader(snapshot.getChannel());
+            //Compare the key before the (more expensive) checksum of the scenarios file
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || buffer.getLong() != scenariosFile.length() || buffer.getLong() != scenariosFile.lastModified()
+                    || buffer.getLong() != checksum(scenariosFile)) {
+                return null;
+            }
+            int scenarioCount = buffer.getInt();
+            ArrayList<Scenario> scenarios = new ArrayList<>(scenarioCount);
+            for (int i = 0; i < scenarioCount; i++) {
+                Scenario scenario = new Scenario(buffer.getString());
+                int locationCount = buffer.getInt();
+                for (int j = 0; j < locationCount; j++) {
+                    String latitude = buffer.getString();
+                    String longitude = buffer.getString();
+                    Location location = new Location(latitude, longitude, buffer.get() == 1 ? "trespassing" : "legal");
+                    int characterCount = buffer.getInt();
+                    for (int k = 0; k < characterCount; k++) {
+                        location.addCharacterToLocation(readCharacter(buffer));
+                    }
+                    scenario.addLocation(location);
+                }
+                scenarios.add(scenario);
+            }
+            return scenarios;
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            //The snapshot is unreadable or out of date, so the scenarios file is imported as usual
+            return null;
+        }
+    }
+
+    /**
+     * Reads the number of scenarios in the snapshot of the scenarios file, without loading them
+     * @param scenariosFile the scenarios file that was passed to the RescueBot program
+     * @return the number of scenarios, or -1 if there is no snapshot that matches the current contents of the scenarios file
+     */
+    public static int countScenarios(File scenariosFile) {
+        File snapshotFile = getSnapshotFile(scenariosFile);
+        if (!snapshotFile.exists() || snapshotFile.lastModified() < scenariosFile.lastModified()) {
+            return -1;
+        }
+        try (RandomAccessFile snapshot = new RandomAccessFile(snapshotFile, "r")) {
+            SnapshotReader buffer = new SnapshotReader(snapshot.getChannel());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || buffer.getLong() != scenariosFile.length() || buffer.getLong() != scenariosFile.lastModified()
+                    || buffer.getLong() != checksum(scenariosFile)) {
+                return -1;
+            }
+            return buffer.getInt();
+        } catch (IOException | BufferUnderflowException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Writes a snapshot of scenarios that were imported from the scenarios file without any warnings
+     * Failing to write the snapshot is not an error, the scenarios file will just be imported again on the next launch
+     * @param scenariosFile the scenarios file the scenarios were imported from
+     * @param scenarios the imported scenarios
+     */
+    public static void save(File scenariosFile, ArrayList<Scenario> scenarios) {
+        File snapshotFile = getSnapshotFile(scenariosFile);
+        File temporaryFile = new File(snapshotFile.getPath() + ".tmp");
+        try {
+            long length = scenariosFile.length();
+            long lastModified = scenariosFile.lastModified();
+            long checksum = checksum(scenariosFile);
+            try (DataOutputStream snapshot = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+                snapshot.writeInt(MAGIC);
+                snapshot.writeInt(VERSION);
+                snapshot.writeLong(length);
+                snapshot.writeLong(lastModified);
+                snapshot.writeLong(checksum);
+                snapshot.writeInt(scenarios.size());
+                for (Scenario scenario : scenarios) {
+                    writeString(snapshot, scenario.getDisaster());
+                    snapshot.writeInt(scenario.getNumberOfLocations());
+                    for (int j = 0; j < scenario.getNumberOfLocations(); j++) {
+                        Location location = scenario.getLocation(j);
+                        writeString(snapshot, location.getLatitude());
+                        writeString(snapshot, location.getLongitude());
+                        snapshot.writeByte(location.getIllegalEntry() ? 1 : 0);
+                        snapshot.writeInt(location.getNumberOfCharacters());
+                        for (int k = 0; k < location.getNumberOfCharacters(); k++) {
+                            writeCharacter(snapshot, location.getCharacter(k));
+                        }
+                    }
+                }
+            }
+            if (!temporaryFile.renameTo(snapshotFile)) {
+                snapshotFile.delete();
+                temporaryFile.renameTo(snapshotFile);
+            }
+        } catch (IOException e) {
+            temporaryFile.delete();
+        }
+    }
+
+    /**
+     * Calculates the CRC32 of a file by memory mapping it
+     * @param file the file to checksum
+     * @return the checksum
+     * @throws IOException thrown when the file cannot be read
+     */
+    private static long checksum(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                long chunk = Math.min(Integer.MAX_VALUE, size - position);
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, chunk));
+                position += chunk;
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static void writeCharacter(DataOutputStream snapshot, LivingBeing character) throws IOException {
+        if (character instanceof Human) {
+            Human human = (Human) character;
+            snapshot.writeByte(HUMAN);
+            writeString(snapshot, human.getGender());
+            snapshot.writeInt(human.getAge());
+            writeString(snapshot, human.getBodyType());
+            writeString(snapshot, human.getProfession());
+            snapshot.writeByte(human.isPregnant() ? 1 : 0);
+        } else {
+            Animal animal = (Animal) character;
+            snapshot.writeByte(ANIMAL);
+            writeString(snapshot, animal.getGender());
+            snapshot.writeInt(animal.getAge());
+            writeString(snapshot, animal.getBodyType());
+            writeString(snapshot, animal.getSpecies());
+            snapshot.writeByte(animal.isPet() ? 1 : 0);
+        }
+    }
+
+    /**
+     * Reads a character back without validating it again, it was validated before the snapshot was written
+     */
+    private static LivingBeing readCharacter(SnapshotReader buffer) throws IOException {
+        byte type = buffer.get();
+        String gender = buffer.getString();
+        int age = buffer.getInt();
+        String bodyType = buffer.getString();
+        String professionOrSpecies = buffer.getString();
+        boolean flag = buffer.get() == 1;
+        if (type == HUMAN) {
+            return Human.createValidated(gender, age, bodyType, professionOrSpecies, flag);
+        } else {
+            return Animal.createValidated(gender, age, bodyType, professionOrSpecies, flag);
+        }
+    }
+
+    private static void writeString(DataOutputStream snapshot, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        snapshot.writeInt(bytes.length);
+        snapshot.write(bytes);
+    }
+}
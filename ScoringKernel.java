@@ -0,0 +1,19 @@
+/**
+ * Scores encoded locations, as the dot product of their feature counts with the weights followed by the trespass penalty
+ * Every kernel must give exactly the same scores as the scalar kernel, so the choice of kernel never changes a decision
+ * @author Joshia Nambi
+ */
+public interface ScoringKernel {
+
+    /**
+     * Scores a range of locations
+     * @param featureCounts the feature counts of every location, laid out as [feature][location]
+     * @param trespassing whether each location was trespassed
+     * @param weights the weight of each feature (any extra entries are ignored)
+     * @param tresspassPenality the factor that the score of a trespassing location is multiplied by
+     * @param from the first location to score (inclusive)
+     * @param to the last location to score (exclusive)
+     * @param scores where the score of location i is stored, at index i - from
+     */
+    void score(double[][] featureCounts, boolean[] trespassing, double[] weights, double tresspassPenality, int from, int to, double[] scores);
+}
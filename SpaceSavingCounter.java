@@ -0,0 +1,219 @@
+import java.util.Arrays;
+
+/**
+ * Counts the most frequent values of an open ended attribute (e.g. species) in a fixed number of counters, with the Space-Saving algorithm
+ * A value without a counter takes over the counter with the smallest count, and inherits that count as its possible overcount.
+ * Every value seen more than (characters counted / counters) times is guaranteed to have a counter, and the count of a value is never
+ * more than its overcount above the true count. Saved characters are only counted while the value has its counter
+ * @author Joshia Nambi
+ */
+public class SpaceSavingCounter {
+
+    private final static int EMPTY = -1;
+
+    private String[] values;        //The value each counter is assigned to
+    private long[] counts;          //The count of each counter, including the overcount it inherited
+    private long[] overcounts;      //The count a counter already had when it was assigned to its value
+    private long[] savedCounts;     //The number of saved characters since the counter was assigned to its value
+    private int[] heap;             //The counters as a min-heap by count, so the smallest counter is found at once
+    private int[] heapPositions;    //The position of each counter in the heap
+    private int usedCounters = 0;
+    private String[] tableValues;   //Open addressing table from value to counter, with linear probing, null for an empty slot
+    private int[] tableCounters;
+    private long total = 0;
+
+    /**
+     * @param capacity the number of counters, which is all the memory the counter ever uses
+     */
+    public SpaceSavingCounter(int capacity) {
+        values = new String[capacity];
+        counts = new long[capacity];
+        overcounts = new long[capacity];
+        savedCounts = new long[capacity];
+        heap = new int[capacity];
+        heapPositions = new int[capacity];
+        int tableSize = Integer.highestOneBit(capacity * 4 - 1) << 1;
+        tableValues = new String[tableSize];
+        tableCounters = new int[tableSize];
+    }
+
+    /**
+     * Counts a character with a value
+     * @param value the value (e.g. the species)
+     * @param saved if the character was saved
+     */
+    public void add(String value, boolean saved) {
+        total++;
+        int counter = find(value);
+        boolean newCounter = false;
+        if (counter == EMPTY) {
+            if (usedCounters < values.length) {
+                counter = usedCounters++;
+                heap[counter] = counter;
+                heapPositions[counter] = counter;
+                newCounter = true;
+            } else {
+                //Take over the smallest counter, its count becomes the possible overcount of the new value
+                counter = heap[0];
+                remove(values[counter]);
+            }
+            values[counter] = value;
+            overcounts[counter] = counts[counter];
+            savedCounts[counter] = 0;
+            insert(value, counter);
+        }
+        counts[counter]++;
+        if (saved) {
+            savedCounts[counter]++;
+        }
+        if (newCounter) {
+            //A new counter has the smallest possible count
+            siftUp(heapPositions[counter]);
+        } else {
+            siftDown(heapPositions[counter]);
+        }
+    }
+
+    /**
+     * @return the number of characters counted
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Finds the values with the highest counts that are certainly more frequent than every value without a counter,
+     * as the true count of a value without a counter is at most the smallest count
+     * @param count the maximum number of values
+     * @return the counters of the values, highest count first
+     */
+    public int[] getTopCounters(int count) {
+        long smallestCount = (usedCounters < values.length) ? 0 : counts[heap[0]];
+        Integer[] order = new Integer[usedCounters];
+        for (int i = 0; i < usedCounters; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(counts[b], counts[a]));
+        int[] top = new int[Math.min(count, usedCounters)];
+        int found = 0;
+        for (int i = 0; i < order.length && found < top.length; i++) {
+            if (getExactCount(order[i]) > smallestCount) {
+                top[found++] = order[i];
+            }
+        }
+        return Arrays.copyOf(top, found);
+    }
+
+    public String getValue(int counter) {
+        return values[counter];
+    }
+
+    /**
+     * @return the count of a counter, at most its overcount above the true count of its value
+     */
+    public long getCount(int counter) {
+        return counts[counter];
+    }
+
+    public long getOvercount(int counter) {
+        return overcounts[counter];
+    }
+
+    /**
+     * @return the number of characters counted since the counter was assigned to its value, which were all of its value
+     */
+    public long getExactCount(int counter) {
+        return counts[counter] - overcounts[counter];
+    }
+
+    /**
+     * @return the number of saved characters counted since the counter was assigned to its value
+     */
+    public long getSavedCount(int counter) {
+        return savedCounts[counter];
+    }
+
+    /**
+     * Restores the heap after the count of the counter at a position grew
+     */
+    private void siftDown(int position) {
+        int counter = heap[position];
+        while (2 * position + 1 < usedCounters) {
+            int child = 2 * position + 1;
+            if (child + 1 < usedCounters && counts[heap[child + 1]] < counts[heap[child]]) {
+                child++;
+            }
+            if (counts[heap[child]] >= counts[counter]) {
+                break;
+            }
+            heap[position] = heap[child];
+            heapPositions[heap[position]] = position;
+            position = child;
+        }
+        heap[position] = counter;
+        heapPositions[counter] = position;
+    }
+
+    private void siftUp(int position) {
+        int counter = heap[position];
+        while (position > 0 && counts[heap[(position - 1) / 2]] > counts[counter]) {
+            heap[position] = heap[(position - 1) / 2];
+            heapPositions[heap[position]] = position;
+            position = (position - 1) / 2;
+        }
+        heap[position] = counter;
+        heapPositions[counter] = position;
+    }
+
+    private int find(String value) {
+        int mask = tableValues.length - 1;
+        for (int slot = hash(value) & mask; tableValues[slot] != null; slot = (slot + 1) & mask) {
+            if (tableValues[slot].equals(value)) {
+                return tableCounters[slot];
+            }
+        }
+        return EMPTY;
+    }
+
+    private void insert(String value, int counter) {
+        int mask = tableValues.length - 1;
+        int slot = hash(value) & mask;
+        while (tableValues[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        tableValues[slot] = value;
+        tableCounters[slot] = counter;
+    }
+
+    /**
+     * Removes a value from the table, moving back the values after it that would no longer be found
+     */
+    private void remove(String value) {
+        int mask = tableValues.length - 1;
+        int slot = hash(value) & mask;
+        while (!tableValues[slot].equals(value)) {
+            slot = (slot + 1) & mask;
+        }
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (tableValues[next] == null) {
+                break;
+            }
+            int home = hash(tableValues[next]) & mask;
+            //The value at next can fill the gap if its home slot is not between the gap and next
+            boolean homeBetween = (slot <= next) ? (slot < home && home <= next) : (slot < home || home <= next);
+            if (!homeBetween) {
+                tableValues[slot] = tableValues[next];
+                tableCounters[slot] = tableCounters[next];
+                slot = next;
+            }
+        }
+        tableValues[slot] = null;
+    }
+
+    private static int hash(String value) {
+        int hash = value.hashCode() * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
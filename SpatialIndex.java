@@ -0,0 +1,192 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A grid over the coordinates of many locations, used to find the locations in a region or the nearest location without checking all of them
+ * Locations are numbered in the order they are added. Once every location has been added, they are sorted into cells of one degree,
+ * so a query only looks at the cells it overlaps. Distances are measured on the map, in degrees of latitude and longitude
+ * @author Joshia Nambi
+ */
+public class SpatialIndex {
+
+    private final static int CELL_SIZE = Location.COORDINATE_SCALE;    //One degree
+    private final static int ROWS = 180;
+    private final static int COLUMNS = 360;
+
+    private int[] latitudes;
+    private int[] longitudes;
+    private int size = 0;
+    private int[] cellStarts;       //Index in cellEntries of the first location of each cell, with one extra entry for the end
+    private int[] cellEntries;      //Location numbers sorted by cell, null when locations were added since the last sort
+
+    public SpatialIndex() {
+        latitudes = new int[1024];
+        longitudes = new int[1024];
+    }
+
+    /**
+     * Adds a location, locations whose coordinates are unknown are numbered but never found
+     * @param latitude the fixed point latitude
+     * @param longitude the fixed point longitude
+     * @return the number of the location
+     */
+    public int add(int latitude, int longitude) {
+        if (size == latitudes.length) {
+            latitudes = Arrays.copyOf(latitudes, size * 2);
+            longitudes = Arrays.copyOf(longitudes, size * 2);
+        }
+        latitudes[size] = latitude;
+        longitudes[size] = longitude;
+        cellEntries = null;
+        return size++;
+    }
+
+    /**
+     * @return the number of locations added
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds every location inside a region, including its edges
+     * @param minLatitude the southern edge
+     * @param minLongitude the western edge
+     * @param maxLatitude the northern edge
+     * @param maxLongitude the eastern edge
+     * @param action called with the number of each location in the region
+     */
+    public void forEachInRegion(int minLatitude, int minLongitude, int maxLatitude, int maxLongitude, IntConsumer action) {
+        sortIntoCells();
+        for (int row = getRow(minLatitude); row <= getRow(maxLatitude); row++) {
+            for (int column = getColumn(minLongitude); column <= getColumn(maxLongitude); column++) {
+                int cell = row * COLUMNS + column;
+                for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+                    int location = cellEntries[i];
+                    if (latitudes[location] >= minLatitude && latitudes[location] <= maxLatitude
+                            && longitudes[location] >= minLongitude && longitudes[location] <= maxLongitude) {
+                        action.accept(location);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the location nearest to a point, searching rings of cells outwards from the cell of the point
+     * @param latitude the fixed point latitude
+     * @param longitude the fixed point longitude
+     * @return the number of the nearest location, or -1 if there are no locations with known coordinates
+     */
+    public int findNearest(int latitude, int longitude) {
+        sortIntoCells();
+        int centreRow = getRow(latitude);
+        int centreColumn = getColumn(longitude);
+        int nearest = -1;
+        double nearestDistance = Double.MAX_VALUE;
+        for (int ring = 0; ring < Math.max(ROWS, COLUMNS); ring++) {
+            for (int row = centreRow - ring; row <= centreRow + ring; row++) {
+                if (row < 0 || row >= ROWS) {
+                    continue;
+                }
+                //Only the edge of the ring, the inside has already been searched
+                int step = (row == centreRow - ring || row == centreRow + ring) ? 1 : Math.max(1, 2 * ring);
+                for (int column = centreColumn - ring; column <= centreColumn + ring; column += step) {
+                    if (column < 0 || column >= COLUMNS) {
+                        continue;
+                    }
+                    int cell = row * COLUMNS + column;
+                    for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+                        int location = cellEntries[i];
+                        double distance = Math.hypot(latitudes[location] - (double) latitude, longitudes[location] - (double) longitude);
+                        if (distance < nearestDistance || (distance == nearestDistance && location < nearest)) {
+                            nearest = location;
+                            nearestDistance = distance;
+                        }
+                    }
+                }
+            }
+            //Every location outside the searched square is further away than its edge
+            if (nearest >= 0 && nearestDistance < getDistanceToSquareEdge(latitude, longitude, centreRow, centreColumn, ring)) {
+                break;
+            }
+        }
+        return nearest;
+    }
+
+    public int getLatitude(int location) {
+        return latitudes[location];
+    }
+
+    public int getLongitude(int location) {
+        return longitudes[location];
+    }
+
+    /**
+     * Sorts the locations into their cells with a counting sort, if locations were added since the last sort
+     */
+    private void sortIntoCells() {
+        if (cellEntries != null) {
+            return;
+        }
+        cellStarts = new int[ROWS * COLUMNS + 1];
+        int[] cells = new int[size];
+        for (int location = 0; location < size; location++) {
+            if (latitudes[location] == Location.UNKNOWN_COORDINATE || longitudes[location] == Location.UNKNOWN_COORDINATE) {
+                cells[location] = -1;
+                continue;
+            }
+            cells[location] = getRow(latitudes[location]) * COLUMNS + getColumn(longitudes[location]);
+            cellStarts[cells[location] + 1]++;
+        }
+        for (int cell = 0; cell < ROWS * COLUMNS; cell++) {
+            cellStarts[cell + 1] += cellStarts[cell];
+        }
+        int[] nextEntry = Arrays.copyOf(cellStarts, ROWS * COLUMNS);
+        cellEntries = new int[cellStarts[ROWS * COLUMNS]];
+        for (int location = 0; location < size; location++) {
+            if (cells[location] >= 0) {
+                cellEntries[nextEntry[cells[location]]++] = location;
+            }
+        }
+    }
+
+    /**
+     * @return the distance from a point to the nearest edge of the square of cells searched so far, or infinity once it covers the whole grid
+     */
+    private static double getDistanceToSquareEdge(int latitude, int longitude, int centreRow, int centreColumn, int ring) {
+        double distance = Double.POSITIVE_INFINITY;
+        if (centreRow - ring > 0) {
+            distance = Math.min(distance, latitude - getRowStart(centreRow - ring));
+        }
+        if (centreRow + ring < ROWS - 1) {
+            distance = Math.min(distance, getRowStart(centreRow + ring + 1) - latitude);
+        }
+        if (centreColumn - ring > 0) {
+            distance = Math.min(distance, longitude - getColumnStart(centreColumn - ring));
+        }
+        if (centreColumn + ring < COLUMNS - 1) {
+            distance = Math.min(distance, getColumnStart(centreColumn + ring + 1) - longitude);
+        }
+        return distance;
+    }
+
+    /**
+     * Coordinates outside of the map are kept in the cells at its edge
+     */
+    private static int getRow(int latitude) {
+        return Math.max(0, Math.min(ROWS - 1, Math.floorDiv(latitude, CELL_SIZE) + ROWS / 2));
+    }
+
+    private static int getColumn(int longitude) {
+        return Math.max(0, Math.min(COLUMNS - 1, Math.floorDiv(longitude, CELL_SIZE) + COLUMNS / 2));
+    }
+
+    private static long getRowStart(int row) {
+        return (long) (row - ROWS / 2) * CELL_SIZE;
+    }
+
+    private static long getColumnStart(int column) {
+        return (long) (column - COLUMNS / 2) * CELL_SIZE;
+    }
+}
@@ -1,10 +1,15 @@
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.PrintWriter;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+import lib.Animal;
+import lib.AttributeDictionary;
+import lib.Human;
 import lib.LivingBeing;
 
 /**
@@ -13,192 +18,263 @@ import lib.LivingBeing;
  */
 public class StatisticsGenerator {
 
-    private ArrayList<Pair> statistics;
+    private int[] savedCounts;      //Number of saved characters with each attribute, indexed by attribute id (species are counted apart)
+    private int[] totalCounts;      //Number of characters with each attribute, indexed by attribute id
+    private int[] attributeIds;     //Reused for the attributes of each character
     private int scenarioCount;
-    private Pair averageAge;
+    private long savedAgeSum;
+    private QuantileSketch savedAges;       //The ages of the saved humans
+    private QuantileSketch perishedAges;    //The ages of the humans that perished
+    private RollingStatistics rollingStatistics;    //Statistics over only the most recent scenarios, null when not enabled
+    private SurvivalCube survivalCube;              //Survival counts by every combination of attributes, for cross-tabulation
+    private HashMap<String, int[]> speciesCounts;   //{saved, total} of each species, null when species are counted in the species counter
+    private SpaceSavingCounter speciesCounter;      //Counts of the most frequent species, null when species are counted exactly
+
+    private final static String LOG_FILE_HEADER = ">>RescueBot Log File<<,gender,age,bodyType,profession,pregnant,species,isPet";
+    private final static int SPECIES_COUNTERS_PER_REPORTED = 16;    //Extra counters make the reported species more likely to be the true top species
+
+    private static int rollingWindowScenarios = 0;
+    private static int rollingWindowMinutes = 0;
+    private static int reportedSpecies = 0;
     
     public StatisticsGenerator() {
-        statistics = new ArrayList<Pair>();
-        averageAge = new Pair("age");
+        savedCounts = new int[AttributeDictionary.getAttributeIdLimit()];
+        totalCounts = new int[AttributeDictionary.getAttributeIdLimit()];
+        attributeIds = new int[LivingBeing.MAX_ATTRIBUTE_IDS];
+        savedAges = new QuantileSketch();
+        perishedAges = new QuantileSketch();
+        if (reportedSpecies > 0) {
+            speciesCounter = new SpaceSavingCounter(reportedSpecies * SPECIES_COUNTERS_PER_REPORTED);
+            survivalCube = new SurvivalCube(reportedSpecies * SPECIES_COUNTERS_PER_REPORTED);
+        } else {
+            speciesCounts = new HashMap<>();
+            survivalCube = new SurvivalCube();
+        }
         scenarioCount = 0;
+        if (rollingWindowScenarios > 0) {
+            rollingStatistics = RollingStatistics.overScenarios(rollingWindowScenarios);
+        } else if (rollingWindowMinutes > 0) {
+            rollingStatistics = RollingStatistics.overMinutes(rollingWindowMinutes);
+        }
+    }
+
+    /**
+     * Makes every statistic generated from now on also report the survival ratios over the last few scenarios
+     * @param scenarios the number of scenarios in the rolling window
+     */
+    public static void setRollingWindowScenarios(int scenarios) {
+        rollingWindowScenarios = scenarios;
+        rollingWindowMinutes = 0;
+    }
+
+    /**
+     * Makes every statistic generated from now on also report the survival ratios over the last few minutes
+     * @param minutes the length of the rolling window in minutes
+     */
+    public static void setRollingWindowMinutes(int minutes) {
+        rollingWindowMinutes = minutes;
+        rollingWindowScenarios = 0;
+    }
+
+    /**
+     * Makes every statistic generated from now on count species in a fixed number of counters, and only report the most frequent
+     * Meant for scenario files with many distinct species, where counting every species exactly would use unbounded memory
+     * @param species the number of species to report
+     */
+    public static void setReportedSpecies(int species) {
+        reportedSpecies = species;
     }
 
     /**
      * Print the statistics to the console, avoiding some predefined attributes
      */
     public void printStatistics(String statisticType) {
-        System.out.println("======================================");
-        System.out.println("# " + statisticType);
-        System.out.println("======================================");
-        System.out.println("- % SAVED AFTER " + scenarioCount + " RUNS");
+        ReportRenderer renderer = ReportRenderer.getConsole();
+        renderStatistics(renderer, statisticType);
+        renderer.flush();
+    }
+
+    /**
+     * Renders the statistics into a report, avoiding some predefined attributes
+     * @param renderer the report being built
+     * @param statisticType the title of the statistics
+     */
+    public void renderStatistics(ReportRenderer renderer, String statisticType) {
+        renderer.title(statisticType);
+        renderer.append("- % SAVED AFTER ").append(scenarioCount).line(" RUNS");
+        ArrayList<Pair> statistics = getStatistics();
         Collections.sort(statistics, (new PairComparator()));
         for (Pair pair : statistics) {
-            switch (pair.getAttribute()) {
-                case "non-pregnant":
-                case "unknown":
-                case "unspecified":
-                case "none":
-                case "non-pet":
-                    break;
-            
-                default:
-                    System.out.printf("%s: %.2f\n", pair.getAttribute(), pair.getSurvivalRatio());
-                    break;
+            if (isReportedAttribute(pair.getAttribute())) {
+                renderer.ratioLine(pair.getAttribute(), pair.getSurvivalRatio());
             }
         }
-        System.out.println("--");
-        System.out.printf("average age: %.2f\n", averageAge.getSurvivalRatio()); 
+        renderer.line("--");
+        renderer.ratioLine("average age", Math.ceil((double) savedAgeSum / savedAges.getCount() * 100) / 100);
+        renderAgeQuantiles(renderer, "saved", savedAges);
+        renderAgeQuantiles(renderer, "perished", perishedAges);
+        if (speciesCounter != null && speciesCounter.getTotal() > 0) {
+            renderTopSpecies(renderer);
+        }
+        if (rollingStatistics != null) {
+            rollingStatistics.renderStatistics(renderer);
+        }
     }
 
     /**
-     * Parses a current scenario to add to the statistics
-     * @param scenario current dilemma
-     * @param deployedLocation when the rescuebot was chosen to be deployed
+     * Renders the 10th percentile, median and 90th percentile of a set of ages, if there are any
+     * @param renderer the report being built
+     * @param outcome whether the ages are of saved or perished humans
+     * @param ages the ages
      */
-    public void parseScenarioForStatistics(Scenario scenario, int deployedLocation) {
-        scenarioCount++;
-        for (int i = 0; i < scenario.getNumberOfLocations(); i++) {
-            //For each location
-            Location currLoc = scenario.getLocation(i);
-            for (int j = 0; j < currLoc.getNumberOfCharacters(); j++) {
-                //For each character in the location
-                String[] characterRepresentation = currLoc.getCharacter(j).getArrayRepresentation();
-                if (characterRepresentation[0].equals("human")) {
-                    processHumanStatistics(characterRepresentation, i == deployedLocation);
-                } else {
-                    processAnimalStatistics(characterRepresentation, i == deployedLocation);
-                }
-                processTresspassingStatus(currLoc.getIllegalEntry(), i == deployedLocation);
+    private static void renderAgeQuantiles(ReportRenderer renderer, String outcome, QuantileSketch ages) {
+        if (ages.getCount() == 0) {
+            return;
+        }
+        renderer.append(outcome).append(" age p10/median/p90: ").append(ages.getQuantile(0.1)).append("/")
+                .append(ages.getQuantile(0.5)).append("/").line(Integer.toString(ages.getQuantile(0.9)));
+    }
+
+    /**
+     * Renders how many animals of each of the most frequent species were counted
+     * A species that took over the counter of another species may have been counted up to its overcount too many times
+     * @param renderer the report being built
+     */
+    private void renderTopSpecies(ReportRenderer renderer) {
+        int[] topCounters = speciesCounter.getTopCounters(reportedSpecies);
+        renderer.append("- TOP ").append(topCounters.length).append(" SPECIES OF ").append(speciesCounter.getTotal()).line(" ANIMALS");
+        for (int counter : topCounters) {
+            renderer.append(speciesCounter.getValue(counter)).append(": ");
+            if (speciesCounter.getOvercount(counter) > 0) {
+                renderer.append(speciesCounter.getCount(counter) - speciesCounter.getOvercount(counter)).append(" to ");
             }
+            renderer.append(speciesCounter.getCount(counter)).line("");
         }
     }
 
     /**
-     * Processes all the characters to determine how many tresspassed/legal access of surviving characters
-     * @param trespassing if location was tresspassed
-     * @param survived if character survived
+     * Determines whether an attribute is shown in the statistics, as the default values of attributes are left out
+     * @param attribute the attribute
+     * @return true if the attribute is shown
      */
-    private void processTresspassingStatus(boolean trespassing, boolean survived) {
-        if (trespassing) {
-            String attribute = "trespassing";
-            int attributeIndex = statisticAttributeSearch(attribute);
-            if (attributeIndex >= 0) {
-                //Attribute already exists in the statistics
-                if (survived) {
-                    statistics.get(attributeIndex).addSavedAttribute();
-                } else {
-                    statistics.get(attributeIndex).addPerishedAttribute();
-                }
-            } else {
-                //Create new attrivute as it doesn't exist
-                statistics.add(new Pair(attribute));
-                if (survived) {
-                    statistics.get(statistics.size()-1).addSavedAttribute();
-                } else {
-                    statistics.get(statistics.size()-1).addPerishedAttribute();
-                }
+    public static boolean isReportedAttribute(String attribute) {
+        switch (attribute) {
+            case "non-pregnant":
+            case "unknown":
+            case "unspecified":
+            case "none":
+            case "non-pet":
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * @return the survival ratio of every attribute seen so far
+     */
+    public ArrayList<Pair> getStatistics() {
+        ArrayList<Pair> statistics = new ArrayList<>();
+        for (int id = 0; id < totalCounts.length; id++) {
+            if (totalCounts[id] > 0) {
+                statistics.add(new Pair(AttributeDictionary.getLabel(id), savedCounts[id], totalCounts[id]));
+            }
+        }
+        if (speciesCounts != null) {
+            for (Map.Entry<String, int[]> species : speciesCounts.entrySet()) {
+                statistics.add(new Pair(species.getKey(), species.getValue()[0], species.getValue()[1]));
             }
         } else {
-            String attribute = "legal";
-            int attributeIndex = statisticAttributeSearch(attribute);
-            if (attributeIndex >= 0) {
-                //Attribute already exists in the statistics
-                if (survived) {
-                    statistics.get(attributeIndex).addSavedAttribute();
-                } else {
-                    statistics.get(attributeIndex).addPerishedAttribute();
-                }
-            } else {
-                //Create new attrivute as it doesn't exist
-                statistics.add(new Pair(attribute));
-                if (survived) {
-                    statistics.get(statistics.size()-1).addSavedAttribute();
-                } else {
-                    statistics.get(statistics.size()-1).addPerishedAttribute();
-                }
+            //The survival ratio of a counted species is over the animals seen since it was given its counter
+            for (int counter : speciesCounter.getTopCounters(reportedSpecies)) {
+                long saved = speciesCounter.getSavedCount(counter);
+                long total = speciesCounter.getExactCount(counter);
+                //A pair counts in ints, so counts too large for one are scaled down together, which keeps the survival ratio
+                long scale = total / Integer.MAX_VALUE + 1;
+                statistics.add(new Pair(speciesCounter.getValue(counter), (int) (saved / scale), (int) (total / scale)));
             }
         }
+        return statistics;
+    }
+
+    public int getScenarioCount() {
+        return scenarioCount;
     }
 
     /**
-     * Processes statistics for an Animal
-     * @param animalRepresentation String representation of the animal
-     * @param survived if the animal survived
+     * @return the survival counts by every combination of attributes and the disaster
      */
-    private void processAnimalStatistics(String[] animalRepresentation, boolean survived) {
-        for (int i = 0; i < animalRepresentation.length; i++) {
-            String attribute = animalRepresentation[i];
-            int attributeIndex = statisticAttributeSearch(attribute);
-            if (attributeIndex >= 0) {
-                //Attribute already exists in the statistics
-                if (survived) {
-                    statistics.get(attributeIndex).addSavedAttribute();
-                } else {
-                    statistics.get(attributeIndex).addPerishedAttribute();
-                }
-            } else {
-                //Create new attrivute as it doesn't exist
-                statistics.add(new Pair(attribute));
-                if (survived) {
-                    statistics.get(statistics.size()-1).addSavedAttribute();
-                } else {
-                    statistics.get(statistics.size()-1).addPerishedAttribute();
-                }
-            }
-        }
+    public SurvivalCube getSurvivalCube() {
+        return survivalCube;
     }
 
     /**
-     * Processes the statistics for a human
-     * @param humanRepresentation String representation of the human
-     * @param survived if the human survived
+     * Parses a current scenario to add to the statistics
+     * @param scenario current dilemma
+     * @param deployedLocation when the rescuebot was chosen to be deployed
      */
-    private void processHumanStatistics(String[] humanRepresentation, boolean survived) {
-        for (int i = 0; i < humanRepresentation.length; i++) {
-            String attribute = humanRepresentation[i];
-            //Process the age of the human
-            if (i == 2) {
-                if (!survived) {
-                    continue;
+    public void parseScenarioForStatistics(Scenario scenario, int deployedLocation) {
+        scenarioCount++;
+        if (rollingStatistics != null) {
+            rollingStatistics.startScenario();
+        }
+        for (int i = 0; i < scenario.getNumberOfLocations(); i++) {
+            //For each location
+            Location currLoc = scenario.getLocation(i);
+            for (int j = 0; j < currLoc.getNumberOfCharacters(); j++) {
+                //For each character in the location
+                LivingBeing character = currLoc.getCharacter(j);
+                boolean survived = (i == deployedLocation);
+                survivalCube.add(character, scenario.getDisaster(), currLoc.getIllegalEntry(), survived);
+                int attributeCount = character.getAttributeIds(attributeIds);
+                for (int k = 0; k < attributeCount; k++) {
+                    recordAttribute(attributeIds[k], survived);
                 }
-                int age = Integer.valueOf(attribute);
-                averageAge.sumSaved(age);
-                averageAge.addPerishedAttribute();
-                continue;
-            }
-            int attributeIndex = statisticAttributeSearch(attribute);
-            if (attributeIndex >= 0) {
-                //Making sure that the attribute already exists in the statistics
-                if (survived) {
-                    statistics.get(attributeIndex).addSavedAttribute();
-                } else {
-                    statistics.get(attributeIndex).addPerishedAttribute();
+                if (character instanceof Animal) {
+                    recordSpecies(((Animal) character).getSpecies(), survived);
                 }
-            } else {
-                //Have to create the attribute as it doesn't exist
-                statistics.add(new Pair(attribute));
-                if (survived) {
-                    statistics.get(statistics.size()-1).addSavedAttribute();
-                } else {
-                    statistics.get(statistics.size()-1).addPerishedAttribute();    
+                //Process the age of the human
+                if (character instanceof Human && survived) {
+                    savedAgeSum += character.getAge();
+                    savedAges.add(character.getAge());
+                } else if (character instanceof Human) {
+                    perishedAges.add(character.getAge());
                 }
+                recordAttribute(currLoc.getIllegalEntry() ? AttributeDictionary.TRESPASSING : AttributeDictionary.LEGAL, survived);
             }
         }
-    }    
+    }
 
     /**
-     * Determine if the attribute has already been seen 
-     * @param str the attribute
-     * @return index if found, otherwise -1
+     * Counts an animal of a species as saved or perished, exactly or in the species counter
+     * @param species the species of the animal
+     * @param survived if the animal survived
      */
-    private int statisticAttributeSearch(String str) {
-        int indexFound = -1;
-        for (int i = 0; i < statistics.size(); i++) {
-            if (statistics.get(i).getAttribute().equals(str)) {
-                indexFound = i;
-            }
+    private void recordSpecies(String species, boolean survived) {
+        if (speciesCounter != null) {
+            speciesCounter.add(species, survived);
+            return;
+        }
+        int[] counts = speciesCounts.computeIfAbsent(species, key -> new int[2]);
+        if (survived) {
+            counts[0]++;
+        }
+        counts[1]++;
+    }
+
+    /**
+     * Counts a character with an attribute as saved or perished, in the overall statistics and the rolling window
+     * @param attributeId the id of the attribute of the character
+     * @param survived if the character survived
+     */
+    private void recordAttribute(int attributeId, boolean survived) {
+        if (survived) {
+            savedCounts[attributeId]++;
+        }
+        totalCounts[attributeId]++;
+        if (rollingStatistics != null) {
+            rollingStatistics.record(attributeId, survived);
         }
-        return indexFound;
     }
 
     /**
@@ -207,46 +283,76 @@ public class StatisticsGenerator {
      */
     public void saveStatisticsToLogFile(String logFilePath, ArrayList<Scenario> scenarios, ArrayList<Integer> savedLocations, String decisionMaker) {
         try {
-            File logFile = new File(logFilePath);
-            if (!logFile.exists()) {
-                generateLogFile(logFile);
-            }
-            PrintWriter statLogger = new PrintWriter(new FileOutputStream(logFile, true));
-            statLogger.println("decisionMaker:" + decisionMaker);
-            //For each scenario
-            for (int i = 0; i < scenarios.size(); i++) {
-                Scenario currentScenario = scenarios.get(i);
-                statLogger.println("scenario:" + currentScenario.getDisaster() + ",,,,,,,");
-
-                //For each location in the scenarion
-                for (int j = 0; j < scenarios.get(i).getNumberOfLocations(); j++) {
-                    Location currentLocation = currentScenario.getLocation(j);
-                    String ifSavedString = ";" + ((savedLocations.get(i) == j) ? "saved" : "perished");
-                    String trespassingString = ";" + ((currentLocation.getIllegalEntry()) ? "trespassing" : "legal");
-                    statLogger.println("location:" + currentLocation.getLatitude() + ";" + currentLocation.getLongitude() + trespassingString + ifSavedString);
-                    //For each character
-                    for (int k = 0; k < currentLocation.getNumberOfCharacters(); k++) {
-                        LivingBeing currCharacter = currentLocation.getCharacter(k);
-                        statLogger.println(currCharacter.getCSVFormat());
-                    }
+            appendToLogFile(logFilePath, formatLogBatch(scenarios, savedLocations, decisionMaker));
+        } catch (IOException e) {
+            System.out.println("ERROR: could not print results. " + LogAppender.describeFailure(e));
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Formats a set of decided scenarios as a batch of the logfile, terminated by the '-----' line
+     * @param scenarios the scenarios that were decided
+     * @param savedLocations the index of the saved location for each scenario
+     * @param decisionMaker who made the decisions (user or algorithm)
+     * @return the batch exactly as it is to be written to the logfile
+     */
+    public static String formatLogBatch(List<Scenario> scenarios, List<Integer> savedLocations, String decisionMaker) {
+        StringBuilder batch = new StringBuilder();
+        batch.append("decisionMaker:").append(decisionMaker).append(System.lineSeparator());
+        formatLoggedScenarios(batch, scenarios, savedLocations);
+        batch.append("-----").append(System.lineSeparator());
+        return batch.toString();
+    }
+
+    /**
+     * Formats decided scenarios as they appear inside a batch of the logfile, without the decision maker and the '-----' line
+     * Used on its own to write a large batch in chunks
+     * @param batch where the formatted scenarios are appended
+     * @param scenarios the scenarios that were decided
+     * @param savedLocations the index of the saved location for each scenario
+     */
+    public static void formatLoggedScenarios(StringBuilder batch, List<Scenario> scenarios, List<Integer> savedLocations) {
+        String newLine = System.lineSeparator();
+        //For each scenario
+        for (int i = 0; i < scenarios.size(); i++) {
+            Scenario currentScenario = scenarios.get(i);
+            batch.append("scenario:").append(currentScenario.getDisaster()).append(",,,,,,,").append(newLine);
+
+            //For each location in the scenarion
+            for (int j = 0; j < currentScenario.getNumberOfLocations(); j++) {
+                Location currentLocation = currentScenario.getLocation(j);
+                String ifSavedString = ";" + ((savedLocations.get(i) == j) ? "saved" : "perished");
+                String trespassingString = ";" + ((currentLocation.getIllegalEntry()) ? "trespassing" : "legal");
+                batch.append("location:").append(currentLocation.getLatitude()).append(";").append(currentLocation.getLongitude())
+                        .append(trespassingString).append(ifSavedString).append(newLine);
+                //For each character
+                for (int k = 0; k < currentLocation.getNumberOfCharacters(); k++) {
+                    LivingBeing currCharacter = currentLocation.getCharacter(k);
+                    batch.append(currCharacter.getCSVFormat()).append(newLine);
                 }
             }
-            statLogger.println("-----");
-            statLogger.close();                
-        } catch (FileNotFoundException e) {
-            System.out.println("ERROR: could not print results. Target directory does not exist.");
-            System.exit(1);
         }
     }
 
     /**
-     * Generates a log file if it doesnt exist
-     * @param logFile
-     * @throws FileNotFoundException
+     * Appends an already formatted batch to the logfile as one unit, generating the logfile first if it doesn't exist
+     * Safe while other processes append to the same logfile
+     * @param logFilePath logfile to save to
+     * @param batch the formatted batch
+     * @throws IOException thrown when the logfile cannot be locked or written, e.g. the target directory does not exist
+     */
+    public static void appendToLogFile(String logFilePath, String batch) throws IOException {
+        LogAppender.appendBatch(new File(logFilePath), LOG_FILE_HEADER, batch);
+    }
+
+    /**
+     * Appends a formatted batch that was written to a file of its own to the logfile as one unit
+     * @param logFilePath logfile to save to
+     * @param batchFile the file holding the formatted batch
+     * @throws IOException thrown when the logfile cannot be locked or written, e.g. the target directory does not exist
      */
-    private void generateLogFile(File logFile) throws FileNotFoundException {
-        PrintWriter fileGenerator = new PrintWriter(logFile);
-        fileGenerator.println(">>RescueBot Log File<<,gender,age,bodyType,profession,pregnant,species,isPet");
-        fileGenerator.close();
+    public static void appendToLogFile(String logFilePath, Path batchFile) throws IOException {
+        LogAppender.appendBatchFile(new File(logFilePath), LOG_FILE_HEADER, batchFile);
     }
 }
@@ -0,0 +1,324 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import lib.*;
+
+/**
+ * A multi-dimensional count of saved and total characters, used to cross-tabulate survival ratios (e.g. profession by age category)
+ * Humans and animals are counted in dense arrays over their enum attributes and the entry status, with one block of counts for
+ * every disaster (and every species for animals). Disasters and species are open ended, so they are numbered as they are first seen.
+ * The cube is filled in one pass, and any two dimensions can be cross-tabulated afterwards without revisiting the scenarios
+ * @author Joshia Nambi
+ */
+public class SurvivalCube {
+
+    public enum Dimension {GENDER, AGE_CATEGORY, BODY_TYPE, PROFESSION, PREGNANT, SPECIES, PET, TRESPASSING, DISASTER}
+
+    private final static String[] GENDERS = {"male", "female", "unknown"};
+    private final static String[] AGE_CATEGORIES = {"baby", "child", "adult", "senior"};
+    private final static String[] BODY_TYPES = {"overweight", "athletic", "average", "unspecified"};
+    private final static String[] PROFESSIONS = {"none", "student", "doctor", "professor", "criminal", "ceo", "homeless", "lawyer", "engineer", "unemployed"};
+    private final static String[] PREGNANT = {"non-pregnant", "pregnant"};
+    private final static String[] PET = {"non-pet", "pet"};
+    private final static String[] TRESPASSING = {"legal", "trespassing"};
+    private final static String OTHER_SPECIES = "other";
+
+    //The enum dimensions each kind of character is counted over, the first dimension varies slowest
+    private final static Dimension[] HUMAN_DIMENSIONS = {Dimension.GENDER, Dimension.AGE_CATEGORY, Dimension.BODY_TYPE, Dimension.PROFESSION, Dimension.PREGNANT, Dimension.TRESPASSING};
+    private final static Dimension[] ANIMAL_DIMENSIONS = {Dimension.GENDER, Dimension.BODY_TYPE, Dimension.PET, Dimension.TRESPASSING};
+    private final static int HUMAN_CELLS = GENDERS.length * AGE_CATEGORIES.length * BODY_TYPES.length * PROFESSIONS.length * PREGNANT.length * TRESPASSING.length;
+    private final static int ANIMAL_CELLS = GENDERS.length * BODY_TYPES.length * PET.length * TRESPASSING.length;
+
+    //The index of each value of the enum dimensions, by attribute id
+    private final static int[] GENDER_INDEXES = getIndexesById(GENDERS);
+    private final static int[] AGE_CATEGORY_INDEXES = getIndexesById(AGE_CATEGORIES);
+    private final static int[] BODY_TYPE_INDEXES = getIndexesById(BODY_TYPES);
+    private final static int[] PROFESSION_INDEXES = getIndexesById(PROFESSIONS);
+
+    private ArrayList<String> disasters;
+    private HashMap<String, Integer> disasterIds;
+    private ArrayList<String> species;
+    private HashMap<String, Integer> speciesIds;            //The index of each species counted on its own
+    private ArrayList<int[][]> humanBlocks;                 //[disaster] -> {saved[], total[]}
+    private ArrayList<ArrayList<int[][]>> animalBlocks;     //[species][disaster] -> {saved[], total[]}
+    private int maxSpecies;
+
+    public SurvivalCube() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxSpecies the number of species counted on their own, species seen after the others are counted together as "other"
+     */
+    public SurvivalCube(int maxSpecies) {
+        this.maxSpecies = maxSpecies;
+        disasters = new ArrayList<>();
+        disasterIds = new HashMap<>();
+        species = new ArrayList<>();
+        speciesIds = new HashMap<>();
+        humanBlocks = new ArrayList<>();
+        animalBlocks = new ArrayList<>();
+    }
+
+    /**
+     * Counts a character in the cube
+     * @param character the character
+     * @param disaster the disaster of the scenario
+     * @param trespassing if the character's location was trespassed
+     * @param saved if the character was saved
+     */
+    public void add(LivingBeing character, String disaster, boolean trespassing, boolean saved) {
+        int disasterId = lookup(disasters, disasterIds, disaster);
+        int[][] block;
+        int cell;
+        int gender = indexOf(GENDER_INDEXES, character.getGenderId());
+        int bodyType = indexOf(BODY_TYPE_INDEXES, character.getBodyTypeId());
+        int trespass = trespassing ? 1 : 0;
+        if (character instanceof Human) {
+            Human human = (Human) character;
+            block = getBlock(humanBlocks, disasterId, HUMAN_CELLS);
+            cell = ((((gender * AGE_CATEGORIES.length + indexOf(AGE_CATEGORY_INDEXES, human.getAgeCategoryId())) * BODY_TYPES.length + bodyType)
+                    * PROFESSIONS.length + indexOf(PROFESSION_INDEXES, human.getProfessionId())) * PREGNANT.length + (human.isPregnant() ? 1 : 0))
+                    * TRESPASSING.length + trespass;
+        } else {
+            Animal animal = (Animal) character;
+            int speciesId = lookupSpecies(animal.getSpecies());
+            while (animalBlocks.size() <= speciesId) {
+                animalBlocks.add(new ArrayList<>());
+            }
+            block = getBlock(animalBlocks.get(speciesId), disasterId, ANIMAL_CELLS);
+            cell = ((gender * BODY_TYPES.length + bodyType) * PET.length + (animal.isPet() ? 1 : 0)) * TRESPASSING.length + trespass;
+        }
+        if (saved) {
+            block[0][cell]++;
+        }
+        block[1][cell]++;
+    }
+
+    /**
+     * Cross-tabulates two dimensions, summing over every other dimension
+     * Characters that don't have one of the dimensions (e.g. animals for profession) are left out
+     * @param rowDimension the dimension of the rows
+     * @param columnDimension the dimension of the columns
+     * @param disaster only count this disaster, or null for every disaster
+     * @return {saved[][], total[][]} indexed by row value and column value
+     */
+    public int[][][] crossTabulate(Dimension rowDimension, Dimension columnDimension, String disaster) {
+        int[][][] table = new int[2][getLabels(rowDimension).length][getLabels(columnDimension).length];
+        Integer disasterFilter = (disaster == null) ? null : disasterIds.getOrDefault(disaster, -1);
+        if (hasDimension(HUMAN_DIMENSIONS, rowDimension) && hasDimension(HUMAN_DIMENSIONS, columnDimension)) {
+            for (int d = 0; d < humanBlocks.size(); d++) {
+                sliceBlock(table, humanBlocks.get(d), HUMAN_DIMENSIONS, HUMAN_CELLS, rowDimension, columnDimension, d, -1, disasterFilter);
+            }
+        }
+        if (hasDimension(ANIMAL_DIMENSIONS, rowDimension) && hasDimension(ANIMAL_DIMENSIONS, columnDimension)) {
+            for (int s = 0; s < animalBlocks.size(); s++) {
+                for (int d = 0; d < animalBlocks.get(s).size(); d++) {
+                    sliceBlock(table, animalBlocks.get(s).get(d), ANIMAL_DIMENSIONS, ANIMAL_CELLS, rowDimension, columnDimension, d, s, disasterFilter);
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Print a cross-tabulation of the survival ratios to the console
+     * @param title the title of the table
+     * @param rowDimension the dimension of the rows
+     * @param columnDimension the dimension of the columns
+     * @param disaster only count this disaster, or null for every disaster
+     */
+    public void printCrossTabulation(String title, Dimension rowDimension, Dimension columnDimension, String disaster) {
+        int[][][] table = crossTabulate(rowDimension, columnDimension, disaster);
+        String[] rowLabels = getLabels(rowDimension);
+        String[] columnLabels = getLabels(columnDimension);
+        int width = 6;
+        for (String label : rowLabels) {
+            width = Math.max(width, label.length() + 1);
+        }
+        for (String label : columnLabels) {
+            width = Math.max(width, label.length() + 1);
+        }
+        System.out.println("======================================");
+        System.out.println("# " + title + ": " + getName(rowDimension) + " x " + getName(columnDimension) + (disaster == null ? "" : " (" + disaster + ")"));
+        System.out.println("======================================");
+        System.out.printf("%-" + width + "s", "");
+        for (String label : columnLabels) {
+            System.out.printf("%" + width + "s", label);
+        }
+        System.out.println();
+        for (int r = 0; r < rowLabels.length; r++) {
+            System.out.printf("%-" + width + "s", rowLabels[r]);
+            for (int c = 0; c < columnLabels.length; c++) {
+                if (table[1][r][c] == 0) {
+                    System.out.printf("%" + width + "s", "-");
+                } else {
+                    System.out.printf("%" + width + ".2f", new Pair(rowLabels[r], table[0][r][c], table[1][r][c]).getSurvivalRatio());
+                }
+            }
+            System.out.println();
+        }
+    }
+
+    /**
+     * @param name a dimension as typed by the user, e.g. "age category", "bodyType" or "disaster"
+     * @return the dimension, or null if there is no such dimension
+     */
+    public static Dimension parseDimension(String name) {
+        String normalised = name.trim().toUpperCase().replace(' ', '_').replace('-', '_');
+        for (Dimension dimension : Dimension.values()) {
+            if (dimension.name().equals(normalised) || dimension.name().replace("_", "").equals(normalised)) {
+                return dimension;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param dimension a dimension
+     * @return the values of the dimension, in the order they are indexed
+     */
+    public String[] getLabels(Dimension dimension) {
+        switch (dimension) {
+            case GENDER:
+                return GENDERS;
+            case AGE_CATEGORY:
+                return AGE_CATEGORIES;
+            case BODY_TYPE:
+                return BODY_TYPES;
+            case PROFESSION:
+                return PROFESSIONS;
+            case PREGNANT:
+                return PREGNANT;
+            case PET:
+                return PET;
+            case TRESPASSING:
+                return TRESPASSING;
+            case SPECIES:
+                return species.toArray(new String[0]);
+            default:
+                return disasters.toArray(new String[0]);
+        }
+    }
+
+    private static String getName(Dimension dimension) {
+        return dimension.name().toLowerCase().replace('_', ' ');
+    }
+
+    /**
+     * Sums the cells of one block into a cross-tabulation
+     * @param speciesId the species of the block, or -1 for humans
+     */
+    private void sliceBlock(int[][][] table, int[][] block, Dimension[] dimensions, int cells, Dimension rowDimension, Dimension columnDimension,
+            int disasterId, int speciesId, Integer disasterFilter) {
+        if (block == null || (disasterFilter != null && disasterFilter != disasterId)) {
+            return;
+        }
+        for (int cell = 0; cell < cells; cell++) {
+            if (block[1][cell] == 0) {
+                continue;
+            }
+            int row = getCoordinate(cell, dimensions, rowDimension, disasterId, speciesId);
+            int column = getCoordinate(cell, dimensions, columnDimension, disasterId, speciesId);
+            table[0][row][column] += block[0][cell];
+            table[1][row][column] += block[1][cell];
+        }
+    }
+
+    /**
+     * Decodes the value of one dimension from the index of a cell
+     */
+    private int getCoordinate(int cell, Dimension[] dimensions, Dimension dimension, int disasterId, int speciesId) {
+        if (dimension == Dimension.DISASTER) {
+            return disasterId;
+        } else if (dimension == Dimension.SPECIES) {
+            return speciesId;
+        }
+        for (int i = dimensions.length - 1; i >= 0; i--) {
+            int size = getLabels(dimensions[i]).length;
+            if (dimensions[i] == dimension) {
+                return cell % size;
+            }
+            cell /= size;
+        }
+        return 0;
+    }
+
+    private static boolean hasDimension(Dimension[] dimensions, Dimension dimension) {
+        if (dimension == Dimension.DISASTER) {
+            return true;
+        } else if (dimension == Dimension.SPECIES) {
+            return dimensions == ANIMAL_DIMENSIONS;
+        }
+        for (Dimension candidate : dimensions) {
+            if (candidate == dimension) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[][] getBlock(ArrayList<int[][]> blocks, int disasterId, int cells) {
+        while (blocks.size() <= disasterId) {
+            blocks.add(null);
+        }
+        if (blocks.get(disasterId) == null) {
+            blocks.set(disasterId, new int[2][cells]);
+        }
+        return blocks.get(disasterId);
+    }
+
+    /**
+     * @return the id of a value in a dictionary, adding the value if it hasn't been seen
+     */
+    private static int lookup(ArrayList<String> labels, HashMap<String, Integer> ids, String value) {
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = labels.size();
+            labels.add(value);
+            ids.put(value, id);
+        }
+        return id;
+    }
+
+    /**
+     * @return the index of a species in the cube, adding the species if it hasn't been seen and there is room for it
+     */
+    private int lookupSpecies(String value) {
+        Integer id = speciesIds.get(value);
+        if (id != null) {
+            return id;
+        }
+        if (species.size() < maxSpecies - 1) {
+            return lookup(species, speciesIds, value);
+        }
+        //Species seen once the cube is full are counted together, without remembering each of them
+        if (species.size() == maxSpecies - 1) {
+            species.add(OTHER_SPECIES);
+        }
+        return maxSpecies - 1;
+    }
+
+    /**
+     * @param indexes the index of each value of a dimension by attribute id
+     * @param attributeId the id of a value
+     * @return the index of the value in its dimension
+     */
+    private static int indexOf(int[] indexes, int attributeId) {
+        return (attributeId < indexes.length) ? indexes[attributeId] : 0;
+    }
+
+    private static int[] getIndexesById(String[] labels) {
+        int[] ids = new int[labels.length];
+        int maxId = 0;
+        for (int i = 0; i < labels.length; i++) {
+            ids[i] = AttributeDictionary.intern(labels[i]);
+            maxId = Math.max(maxId, ids[i]);
+        }
+        int[] indexes = new int[maxId + 1];
+        for (int i = 0; i < labels.length; i++) {
+            indexes[ids[i]] = i;
+        }
+        return indexes;
+    }
+}
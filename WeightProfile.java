@@ -0,0 +1,202 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.TreeMap;
+
+import lib.AttributeDictionary;
+import lib.exceptions.InvalidDataFormatException;
+
+/**
+ * The weights the RescueBot uses to score the characters at a location, together with the penalty for trespassing
+ * @author Joshia Nambi
+ */
+public class WeightProfile {
+
+    private final static String HEADER = ">>RescueBot Weight Profile<<,weight";
+    private final static String TRESSPASS_PENALITY = "trespass penalty";
+
+    private HashMap<String, Double> characteristicValues;
+    private String[] characteristics;                   //Sorted, the order of the features when locations are scored as vectors
+    private HashMap<String, Integer> featureIndexes;
+    private int[] featureIndexesById;                   //The feature index of each attribute id, or -1 if it has no weight
+    private double[] weights;
+    private double tresspassPenality;
+    private long fingerprint;
+
+    /**
+     * Constructs a profile from a set of weights
+     * @param characteristicValues the weight of each characteristic (characteristics that aren't present have no weight)
+     * @param tresspassPenality the factor that the score of a trespassing location is multiplied by
+     */
+    public WeightProfile(Map<String, Double> characteristicValues, double tresspassPenality) {
+        this.characteristicValues = new HashMap<>(characteristicValues);
+        this.characteristics = new TreeMap<>(characteristicValues).keySet().toArray(new String[0]);
+        this.featureIndexes = new HashMap<>();
+        this.weights = new double[characteristics.length];
+        int[] characteristicIds = new int[characteristics.length];
+        int maxId = -1;
+        for (int i = 0; i < characteristics.length; i++) {
+            featureIndexes.put(characteristics[i], i);
+            weights[i] = characteristicValues.get(characteristics[i]);
+            characteristicIds[i] = AttributeDictionary.intern(characteristics[i]);
+            maxId = Math.max(maxId, characteristicIds[i]);
+        }
+        this.featureIndexesById = new int[maxId + 1];
+        Arrays.fill(featureIndexesById, -1);
+        for (int i = 0; i < characteristics.length; i++) {
+            featureIndexesById[characteristicIds[i]] = i;
+        }
+        this.tresspassPenality = tresspassPenality;
+        this.fingerprint = calculateFingerprint();
+    }
+
+    /**
+     * @return the weights the RescueBot was designed with
+     */
+    public static WeightProfile getDefaultProfile() {
+        //Reduce the likliness to save the people in the scenario if they have tresspassed
+        final double TRESSPASS_PENALITY = 0.5;    //1
+        final HashMap<String,Double> CHARACTERISTIC_VALUES = new HashMap<>();
+        //Pregnant Status
+        CHARACTERISTIC_VALUES.put("pregnant", 1.0);
+        //If the animal is a pet
+        CHARACTERISTIC_VALUES.put("pet", 0.75);
+        //The age category of the human
+        CHARACTERISTIC_VALUES.put("baby", 1.0);
+        CHARACTERISTIC_VALUES.put("child", 0.75);
+        CHARACTERISTIC_VALUES.put("adult", 0.5);
+        CHARACTERISTIC_VALUES.put("senior", 0.25);
+        //The body type
+        CHARACTERISTIC_VALUES.put("athletic", 1.0);
+        CHARACTERISTIC_VALUES.put("average", 0.5);
+        CHARACTERISTIC_VALUES.put("overweight", 0.25);
+        //Select professions should get priority
+        CHARACTERISTIC_VALUES.put("doctor", 1.0);
+        CHARACTERISTIC_VALUES.put("professor", 1.0);
+        CHARACTERISTIC_VALUES.put("engineer", 1.0);
+        CHARACTERISTIC_VALUES.put("lawyer", 1.0);
+        CHARACTERISTIC_VALUES.put("student", 0.8);
+        CHARACTERISTIC_VALUES.put("criminal", -1.0);
+        CHARACTERISTIC_VALUES.put("ceo", 0.7);
+        CHARACTERISTIC_VALUES.put("unemployed", -0.5);
+        return new WeightProfile(CHARACTERISTIC_VALUES, TRESSPASS_PENALITY);
+    }
+
+    /**
+     * Reads a profile saved by saveProfile
+     * @param profilePath the path of the profile file
+     * @return the profile
+     * @throws FileNotFoundException thrown when file cannot be found at path
+     * @throws InvalidDataFormatException thrown when a line is not a characteristic followed by its weight
+     */
+    public static WeightProfile loadProfile(String profilePath) throws FileNotFoundException, InvalidDataFormatException {
+        HashMap<String, Double> characteristicValues = new HashMap<>();
+        Double tresspassPenality = null;
+        try (Scanner profileReader = new Scanner(new File(profilePath))) {
+            if (!profileReader.hasNextLine() || !profileReader.nextLine().equals(HEADER)) {
+                throw new InvalidDataFormatException();
+            }
+            while (profileReader.hasNextLine()) {
+                String[] lineArray = profileReader.nextLine().split(",");
+                if (lineArray.length != 2) {
+                    throw new InvalidDataFormatException();
+                }
+                try {
+                    if (lineArray[0].equals(TRESSPASS_PENALITY)) {
+                        tresspassPenality = Double.parseDouble(lineArray[1]);
+                    } else {
+                        characteristicValues.put(lineArray[0], Double.parseDouble(lineArray[1]));
+                    }
+                } catch (NumberFormatException e) {
+                    throw new InvalidDataFormatException();
+                }
+            }
+        }
+        if (tresspassPenality == null) {
+            throw new InvalidDataFormatException();
+        }
+        return new WeightProfile(characteristicValues, tresspassPenality);
+    }
+
+    /**
+     * Writes the profile so it can be loaded again, one characteristic and its weight per line
+     * @param profilePath the path of the profile file, replaced if it exists
+     * @throws FileNotFoundException thrown when the file cannot be written
+     */
+    public void saveProfile(String profilePath) throws FileNotFoundException {
+        try (PrintWriter profileWriter = new PrintWriter(profilePath)) {
+            profileWriter.println(HEADER);
+            profileWriter.println(TRESSPASS_PENALITY + "," + tresspassPenality);
+            for (int i = 0; i < characteristics.length; i++) {
+                profileWriter.println(characteristics[i] + "," + weights[i]);
+            }
+        }
+    }
+
+    /**
+     * @param characteristic a word describing a character
+     * @return the weight of the characteristic
+     */
+    public double getCharacteristicValue(String characteristic) {
+        return characteristicValues.get(characteristic);
+    }
+
+    /**
+     * @return every characteristic that has a weight in this profile, in sorted order
+     */
+    public String[] getCharacteristics() {
+        return characteristics;
+    }
+
+    /**
+     * @param characteristic a word describing a character
+     * @return the index of the characteristic in getCharacteristics(), or -1 if it has no weight
+     */
+    public int getFeatureIndex(String characteristic) {
+        Integer index = featureIndexes.get(characteristic);
+        return (index == null) ? -1 : index;
+    }
+
+    /**
+     * @param attributeId the id of a word describing a character
+     * @return the index of the characteristic in getCharacteristics(), or -1 if it has no weight
+     */
+    public int getFeatureIndex(int attributeId) {
+        return (attributeId < featureIndexesById.length) ? featureIndexesById[attributeId] : -1;
+    }
+
+    /**
+     * @return the weight of every characteristic, in the order of getCharacteristics()
+     */
+    public double[] getWeights() {
+        return weights;
+    }
+
+    public double getTresspassPenality() {
+        return tresspassPenality;
+    }
+
+    /**
+     * @return a hash identifying the weights of this profile, used to keep cached decisions of different profiles apart
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Hashes the weights in a fixed (sorted) order, so equal profiles always have the same fingerprint
+     * @return the fingerprint
+     */
+    private long calculateFingerprint() {
+        long hash = Double.doubleToLongBits(tresspassPenality);
+        for (Map.Entry<String, Double> entry : new TreeMap<>(characteristicValues).entrySet()) {
+            hash = hash * 31 + entry.getKey().hashCode();
+            hash = hash * 31 + Double.doubleToLongBits(entry.getValue());
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,177 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Measures how sensitive the decisions of the RescueBot are to its weights
+ * The scenarios are encoded once, then every weight setting of a grid or random sample re-decides all of them in parallel.
+ * Each setting is compared to the base profile by how many decisions changed and how far each survival ratio moved
+ * @author Joshia Nambi
+ */
+public class WeightSweep {
+
+    private final static double[] GRID_STEPS = {-1.0, -0.5, -0.25, 0.25, 0.5, 1.0};       //Added to one weight at a time
+    private final static double[] GRID_PENALITIES = {0.0, 0.25, 0.75, 1.0};
+    private final static double RANDOM_SPREAD = 1.0;       //Random weights are at most this far from the base weights
+    private final static int SETTINGS_TO_REPORT = 5;
+
+    private EncodedCorpus corpus;
+    private String[] features;
+    private double[] baseWeights;
+    private double baseTresspassPenality;
+    private int[] baseDecisions;
+    private double[] baseSurvivalRatios;
+    private ArrayList<double[]> settings;       //The weights of each setting, followed by its trespass penalty
+    private ArrayList<String> descriptions;
+    private double[] changedDecisions;          //Fraction of decisions that differ from the base profile, for each setting
+    private double[][] survivalRatios;          //[setting][attribute]
+
+    /**
+     * Encodes the scenarios and decides them with the base profile
+     * @param scenarios the scenarios to re-decide
+     * @param baseProfile the weights every setting is compared to
+     */
+    public WeightSweep(List<Scenario> scenarios, WeightProfile baseProfile) {
+        features = baseProfile.getCharacteristics();
+        corpus = new EncodedCorpus(scenarios, baseProfile, true);
+        baseWeights = baseProfile.getWeights();
+        baseTresspassPenality = baseProfile.getTresspassPenality();
+        baseDecisions = new int[corpus.getScenarioCount()];
+        corpus.decideAll(baseWeights, baseTresspassPenality, baseDecisions);
+        baseSurvivalRatios = corpus.getSurvivalRatios(baseDecisions);
+        settings = new ArrayList<>();
+        descriptions = new ArrayList<>();
+    }
+
+    /**
+     * Adds a grid of settings that each change one weight (or the trespass penalty) of the base profile
+     */
+    public void addGrid() {
+        for (int i = 0; i < features.length; i++) {
+            for (double step : GRID_STEPS) {
+                double[] setting = Arrays.copyOf(baseWeights, features.length + 1);
+                setting[i] += step;
+                setting[features.length] = baseTresspassPenality;
+                addSetting(setting, String.format("%s %+.2f", features[i], step));
+            }
+        }
+        for (double tresspassPenality : GRID_PENALITIES) {
+            double[] setting = Arrays.copyOf(baseWeights, features.length + 1);
+            setting[features.length] = tresspassPenality;
+            addSetting(setting, String.format("trespass penalty %.2f", tresspassPenality));
+        }
+    }
+
+    /**
+     * Adds settings that change every weight of the base profile at random, and pick a random trespass penalty
+     * @param count the number of settings
+     * @param seed the seed of the random numbers, so a sample can be repeated
+     */
+    public void addRandomSample(int count, long seed) {
+        Random random = new Random(seed);
+        for (int n = 0; n < count; n++) {
+            double[] setting = new double[features.length + 1];
+            for (int i = 0; i < features.length; i++) {
+                setting[i] = baseWeights[i] + (random.nextDouble() * 2 - 1) * RANDOM_SPREAD;
+            }
+            setting[features.length] = random.nextDouble();
+            addSetting(setting, "random #" + (n + 1));
+        }
+    }
+
+    /**
+     * Re-decides every scenario with every setting, spreading the settings over all processors
+     */
+    public void evaluate() {
+        int scenarioCount = corpus.getScenarioCount();
+        changedDecisions = new double[settings.size()];
+        survivalRatios = new double[settings.size()][];
+        ThreadLocal<int[]> decisionBuffers = ThreadLocal.withInitial(() -> new int[scenarioCount]);
+        IntStream.range(0, settings.size()).parallel().forEach(s -> {
+            double[] setting = settings.get(s);
+            int[] decisions = decisionBuffers.get();
+            corpus.decideAll(setting, setting[features.length], decisions);
+            int changed = 0;
+            for (int i = 0; i < scenarioCount; i++) {
+                if (decisions[i] != baseDecisions[i]) {
+                    changed++;
+                }
+            }
+            changedDecisions[s] = (scenarioCount == 0) ? 0 : (double) changed / scenarioCount;
+            survivalRatios[s] = corpus.getSurvivalRatios(decisions);
+        });
+    }
+
+    /**
+     * Print how the decisions and survival ratios shifted over the evaluated settings to the console
+     * @param elapsedMillis how long the sweep took
+     */
+    public void printReport(long elapsedMillis) {
+        ArrayList<String> attributes = corpus.getAttributes();
+        System.out.println("======================================");
+        System.out.println("# Weight Sensitivity Sweep");
+        System.out.println("======================================");
+        System.out.println("- " + settings.size() + " WEIGHT SETTINGS OVER " + corpus.getScenarioCount() + " SCENARIOS IN " + elapsedMillis + " ms");
+        System.out.println("- % DECISIONS CHANGED");
+        Integer[] order = new Integer[settings.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(changedDecisions[b], changedDecisions[a]));
+        for (int i = 0; i < Math.min(SETTINGS_TO_REPORT, order.length); i++) {
+            int s = order[i];
+            int attribute = getLargestShift(s);
+            System.out.printf("%s: %.2f", descriptions.get(s), changedDecisions[s]);
+            if (attribute >= 0) {
+                System.out.printf(" (%s %.2f -> %.2f)", attributes.get(attribute), baseSurvivalRatios[attribute], survivalRatios[s][attribute]);
+            }
+            System.out.println();
+        }
+        System.out.println("- % SAVED RANGE OVER ALL SETTINGS");
+        Integer[] attributeOrder = new Integer[attributes.size()];
+        double[][] ranges = new double[attributes.size()][];
+        for (int a = 0; a < attributeOrder.length; a++) {
+            attributeOrder[a] = a;
+            ranges[a] = new double[] {baseSurvivalRatios[a], baseSurvivalRatios[a]};
+            for (double[] ratios : survivalRatios) {
+                ranges[a][0] = Math.min(ranges[a][0], ratios[a]);
+                ranges[a][1] = Math.max(ranges[a][1], ratios[a]);
+            }
+        }
+        Arrays.sort(attributeOrder, (a, b) -> Double.compare(ranges[b][1] - ranges[b][0], ranges[a][1] - ranges[a][0]));
+        for (int a : attributeOrder) {
+            if (StatisticsGenerator.isReportedAttribute(attributes.get(a))) {
+                System.out.printf("%s: %.2f [%.2f, %.2f]\n", attributes.get(a), baseSurvivalRatios[a], ranges[a][0], ranges[a][1]);
+            }
+        }
+    }
+
+    public int getSettingCount() {
+        return settings.size();
+    }
+
+    private void addSetting(double[] setting, String description) {
+        settings.add(setting);
+        descriptions.add(description);
+    }
+
+    /**
+     * @param setting index of a setting
+     * @return the reported attribute whose survival ratio moved the most from the base profile, or -1 if none moved
+     */
+    private int getLargestShift(int setting) {
+        ArrayList<String> attributes = corpus.getAttributes();
+        int largest = -1;
+        double largestShift = 0;
+        for (int a = 0; a < attributes.size(); a++) {
+            double shift = Math.abs(survivalRatios[setting][a] - baseSurvivalRatios[a]);
+            if (shift > largestShift && StatisticsGenerator.isReportedAttribute(attributes.get(a))) {
+                largest = a;
+                largestShift = shift;
+            }
+        }
+        return largest;
+    }
+}
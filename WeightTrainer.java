@@ -0,0 +1,390 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import lib.*;
+import lib.exceptions.EmptyFileException;
+import lib.exceptions.InvalidCharacteristicException;
+
+/**
+ * Learns the weights and trespass penalty of a profile from the scenarios users judged
+ * The user batches of the log file are streamed once, encoding every location as the feature counts the decision algorithm scores.
+ * The weights are then fitted with mini-batch gradient descent on a pairwise ranking loss: in every scenario the saved location
+ * should score higher than each location that perished. The gradient of a mini-batch is calculated in slices on all processors
+ * @author Joshia Nambi
+ */
+public class WeightTrainer {
+
+    private final static int EPOCHS = 20;
+    private final static int BATCH_SIZE = 4096;         //Scenarios per gradient step
+    private final static int SLICE_SIZE = 256;          //Scenarios per parallel task, fixed so the result doesn't depend on the number of processors
+    private final static double LEARNING_RATE = 0.05;
+    private final static double REGULARIZATION = 0.001;     //Pulls the weights towards the starting profile, so rare characteristics keep their weight
+    private final static double BETA1 = 0.9;                //Adam moment decay rates
+    private final static double BETA2 = 0.999;
+    private final static double EPSILON = 1e-8;
+
+    private WeightProfile startingProfile;
+    private String[] features;
+    private HashMap<String, int[]> characterFeatures;       //The features of every distinct logged character line, most lines repeat
+    private float[] featureCounts;      //[location * features + feature]
+    private boolean[] trespassing;
+    private int[] scenarioStarts;       //Index of the first location of each scenario, with one extra entry for the end
+    private int[] savedLocations;       //Index of the saved location within each scenario
+    private int scenarioCount = 0;
+    private int locationCount = 0;
+    private long pairCount = 0;
+    private double[] trainedWeights;    //The weights, followed by the trespass penalty
+    private double startingLoss;
+    private double trainedLoss;
+
+    /**
+     * @param startingProfile the profile whose characteristics are trained, starting from its weights
+     */
+    public WeightTrainer(WeightProfile startingProfile) {
+        this.startingProfile = startingProfile;
+        this.features = startingProfile.getCharacteristics();
+        this.characterFeatures = new HashMap<>();
+        this.featureCounts = new float[1024 * features.length];
+        this.trespassing = new boolean[1024];
+        this.scenarioStarts = new int[1025];
+        this.savedLocations = new int[1024];
+    }
+
+    /**
+     * Reads the log file at the path provided and encodes every scenario judged by a user
+     * @param logFilePath the path of the log file
+     * @throws FileNotFoundException thrown when file cannot be found at path
+     * @throws EmptyFileException when file does not exist at path
+     */
+    public void readLogFile(String logFilePath) throws FileNotFoundException, EmptyFileException {
+        File logFile = new File(logFilePath);
+        if (!(logFile.length() > 0)) {
+            throw new EmptyFileException();
+        }
+
+        try (BufferedReader logReader = new BufferedReader(new InputStreamReader(CompressedLog.openLogStream(logFile), CompressedLog.LOG_CHARSET))) {
+            boolean userBatch = false;
+            int savedLocation = -1;
+            String line;
+            while ((line = logReader.readLine()) != null) {
+                if (line.startsWith("decisionMaker:")) {
+                    userBatch = line.substring(14).equals("user");
+                } else if (!userBatch || line.startsWith(">>RescueBot Log File<<")) {
+                    continue;
+                } else if (line.startsWith("scenario:") || line.equals("-----")) {
+                    finishScenario(savedLocation);
+                    savedLocation = -1;
+                    userBatch = !line.equals("-----");
+                } else if (line.startsWith("location:")) {
+                    String[] locationData = line.substring(9).split(",", 2)[0].split(";");
+                    if (locationData[3].equals("saved")) {
+                        savedLocation = locationCount - scenarioStarts[scenarioCount];
+                    }
+                    addLocation(locationData[2].equals("trespassing"));
+                } else {
+                    int[] characterFeatureIndexes = characterFeatures.computeIfAbsent(line, this::getFeatureIndexes);
+                    for (int feature : characterFeatureIndexes) {
+                        featureCounts[(locationCount - 1) * features.length + feature]++;
+                    }
+                }
+            }
+            finishScenario(savedLocation);
+        } catch (IOException e) {
+            throw new FileNotFoundException(e.getMessage());
+        }
+    }
+
+    /**
+     * Fits the weights and trespass penalty to the decisions that were read, starting from the starting profile
+     * @param seed the seed of the order the scenarios are visited in, so training can be repeated
+     */
+    public void train(long seed) {
+        int parameters = features.length + 1;
+        double[] startingWeights = Arrays.copyOf(startingProfile.getWeights(), parameters);
+        startingWeights[features.length] = startingProfile.getTresspassPenality();
+        double[] weights = startingWeights.clone();
+        double[] firstMoments = new double[parameters];
+        double[] secondMoments = new double[parameters];
+        int[] order = IntStream.range(0, scenarioCount).toArray();
+        Random random = new Random(seed);
+        startingLoss = getLoss(weights, order, 0, scenarioCount);
+        int step = 0;
+        for (int epoch = 0; epoch < EPOCHS; epoch++) {
+            //Visit the scenarios in a new order every epoch
+            for (int i = order.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int scenario = order[i];
+                order[i] = order[j];
+                order[j] = scenario;
+            }
+            for (int batchStart = 0; batchStart < scenarioCount; batchStart += BATCH_SIZE) {
+                int batchEnd = Math.min(scenarioCount, batchStart + BATCH_SIZE);
+                double[] gradient = getGradient(weights, order, batchStart, batchEnd);
+                step++;
+                for (int p = 0; p < parameters; p++) {
+                    gradient[p] += REGULARIZATION * (weights[p] - startingWeights[p]);
+                    firstMoments[p] = BETA1 * firstMoments[p] + (1 - BETA1) * gradient[p];
+                    secondMoments[p] = BETA2 * secondMoments[p] + (1 - BETA2) * gradient[p] * gradient[p];
+                    double firstMoment = firstMoments[p] / (1 - Math.pow(BETA1, step));
+                    double secondMoment = secondMoments[p] / (1 - Math.pow(BETA2, step));
+                    weights[p] -= LEARNING_RATE * firstMoment / (Math.sqrt(secondMoment) + EPSILON);
+                }
+                //The trespass penalty is a factor between not saving trespassers at all and ignoring trespassing
+                weights[features.length] = Math.max(0, Math.min(1, weights[features.length]));
+            }
+        }
+        trainedWeights = weights;
+        trainedLoss = getLoss(weights, order, 0, scenarioCount);
+    }
+
+    /**
+     * @return the trained profile, with the characteristics of the starting profile
+     */
+    public WeightProfile getTrainedProfile() {
+        HashMap<String, Double> characteristicValues = new HashMap<>();
+        for (int f = 0; f < features.length; f++) {
+            characteristicValues.put(features[f], trainedWeights[f]);
+        }
+        return new WeightProfile(characteristicValues, trainedWeights[features.length]);
+    }
+
+    /**
+     * @return the number of judged scenarios with at least one location that perished
+     */
+    public int getScenarioCount() {
+        return scenarioCount;
+    }
+
+    /**
+     * Print how well the starting and trained profiles agree with the users to the console
+     * @param elapsedMillis how long reading and training took
+     */
+    public void printReport(long elapsedMillis) {
+        double[] startingWeights = Arrays.copyOf(startingProfile.getWeights(), features.length + 1);
+        startingWeights[features.length] = startingProfile.getTresspassPenality();
+        System.out.println("======================================");
+        System.out.println("# Weight Training");
+        System.out.println("======================================");
+        System.out.println("- " + scenarioCount + " USER DECISIONS (" + pairCount + " PAIRS) IN " + elapsedMillis + " ms");
+        System.out.printf("- RANKING LOSS: %.4f -> %.4f\n", startingLoss, trainedLoss);
+        System.out.printf("- %% DECISIONS MATCHED: %.2f -> %.2f\n", getMatchedDecisions(startingWeights), getMatchedDecisions(trainedWeights));
+        System.out.println("- WEIGHTS");
+        for (int f = 0; f < features.length; f++) {
+            System.out.printf("%s: %.2f -> %.2f\n", features[f], startingWeights[f], trainedWeights[f]);
+        }
+        System.out.printf("trespass penalty: %.2f -> %.2f\n", startingWeights[features.length], trainedWeights[features.length]);
+    }
+
+    /**
+     * Calculates the gradient of the mean ranking loss over a range of scenarios, one slice per parallel task
+     * The slices are added up in order, so the gradient is the same on any number of processors
+     */
+    private double[] getGradient(double[] weights, int[] order, int from, int to) {
+        int slices = (to - from + SLICE_SIZE - 1) / SLICE_SIZE;
+        double[][] sliceGradients = new double[slices][];
+        long[] slicePairs = new long[slices];
+        IntStream.range(0, slices).parallel().forEach(slice -> {
+            double[] gradient = new double[weights.length];
+            double[] scores = new double[0];
+            for (int i = from + slice * SLICE_SIZE; i < Math.min(to, from + (slice + 1) * SLICE_SIZE); i++) {
+                int scenario = order[i];
+                int start = scenarioStarts[scenario];
+                int saved = start + savedLocations[scenario];
+                scores = scoreScenario(weights, scenario, scores);
+                for (int location = start; location < scenarioStarts[scenario + 1]; location++) {
+                    if (location == saved) {
+                        continue;
+                    }
+                    //d/dmargin of log(1 + e^-margin)
+                    double slope = -1 / (1 + Math.exp(scores[savedLocations[scenario]] - scores[location - start]));
+                    addScoreGradient(weights, saved, slope, gradient);
+                    addScoreGradient(weights, location, -slope, gradient);
+                    slicePairs[slice]++;
+                }
+            }
+            sliceGradients[slice] = gradient;
+        });
+        double[] gradient = new double[weights.length];
+        long pairs = 0;
+        for (int slice = 0; slice < slices; slice++) {
+            for (int p = 0; p < weights.length; p++) {
+                gradient[p] += sliceGradients[slice][p];
+            }
+            pairs += slicePairs[slice];
+        }
+        for (int p = 0; p < weights.length; p++) {
+            gradient[p] /= Math.max(1, pairs);
+        }
+        return gradient;
+    }
+
+    /**
+     * Adds the gradient of the score of a location, multiplied by a factor
+     * @param weights the weights, followed by the trespass penalty
+     * @param location the location
+     * @param factor the factor
+     * @param gradient where the gradient is added
+     */
+    private void addScoreGradient(double[] weights, int location, double factor, double[] gradient) {
+        int offset = location * features.length;
+        double penality = trespassing[location] ? weights[features.length] : 1;
+        for (int f = 0; f < features.length; f++) {
+            gradient[f] += factor * featureCounts[offset + f] * penality;
+        }
+        if (trespassing[location]) {
+            gradient[features.length] += factor * getDotProduct(weights, location);
+        }
+    }
+
+    /**
+     * @return the mean ranking loss over a range of scenarios
+     */
+    private double getLoss(double[] weights, int[] order, int from, int to) {
+        double loss = 0;
+        double[] scores = new double[0];
+        for (int i = from; i < to; i++) {
+            int scenario = order[i];
+            scores = scoreScenario(weights, scenario, scores);
+            double savedScore = scores[savedLocations[scenario]];
+            for (int location = 0; location < scenarioStarts[scenario + 1] - scenarioStarts[scenario]; location++) {
+                if (location != savedLocations[scenario]) {
+                    loss += Math.log1p(Math.exp(scores[location] - savedScore));
+                }
+            }
+        }
+        return loss / Math.max(1, pairCount);
+    }
+
+    /**
+     * @param weights the weights, followed by the trespass penalty
+     * @return the fraction of scenarios where the weights save the same location as the user, deciding like the decision algorithm
+     */
+    private double getMatchedDecisions(double[] weights) {
+        int matched = 0;
+        double[] scores = new double[0];
+        for (int scenario = 0; scenario < scenarioCount; scenario++) {
+            scores = scoreScenario(weights, scenario, scores);
+            double maxLikelinessToSave = 0;
+            int indexOfMaxLikelinessToSave = 0;
+            for (int location = 0; location < scenarioStarts[scenario + 1] - scenarioStarts[scenario]; location++) {
+                if (scores[location] > maxLikelinessToSave) {
+                    maxLikelinessToSave = scores[location];
+                    indexOfMaxLikelinessToSave = location;
+                }
+            }
+            if (indexOfMaxLikelinessToSave == savedLocations[scenario]) {
+                matched++;
+            }
+        }
+        return (scenarioCount == 0) ? 0 : (double) matched / scenarioCount;
+    }
+
+    /**
+     * Scores every location of a scenario
+     * @param weights the weights, followed by the trespass penalty
+     * @param scenario the scenario
+     * @param scores a buffer for the scores, replaced if it is too small
+     * @return the scores, indexed by location within the scenario
+     */
+    private double[] scoreScenario(double[] weights, int scenario, double[] scores) {
+        int start = scenarioStarts[scenario];
+        int end = scenarioStarts[scenario + 1];
+        if (scores.length < end - start) {
+            scores = new double[end - start];
+        }
+        for (int location = start; location < end; location++) {
+            double likelinessToSave = getDotProduct(weights, location);
+            if (trespassing[location]) {
+                likelinessToSave *= weights[features.length];
+            }
+            scores[location - start] = likelinessToSave;
+        }
+        return scores;
+    }
+
+    private double getDotProduct(double[] weights, int location) {
+        int offset = location * features.length;
+        double dotProduct = 0;
+        for (int f = 0; f < features.length; f++) {
+            dotProduct += featureCounts[offset + f] * weights[f];
+        }
+        return dotProduct;
+    }
+
+    private void addLocation(boolean trespassed) {
+        if (locationCount == trespassing.length) {
+            trespassing = Arrays.copyOf(trespassing, locationCount * 2);
+            featureCounts = Arrays.copyOf(featureCounts, locationCount * 2 * features.length);
+        }
+        trespassing[locationCount++] = trespassed;
+    }
+
+    /**
+     * Keeps the scenario that was read last if a location was saved and at least one perished, otherwise its locations are dropped
+     * @param savedLocation the index of the saved location within the scenario, or -1 if none was saved
+     */
+    private void finishScenario(int savedLocation) {
+        int start = scenarioStarts[scenarioCount];
+        if (savedLocation < 0 || locationCount - start < 2) {
+            Arrays.fill(featureCounts, start * features.length, locationCount * features.length, 0);
+            locationCount = start;
+            return;
+        }
+        if (scenarioCount == savedLocations.length) {
+            savedLocations = Arrays.copyOf(savedLocations, savedLocations.length * 2);
+            scenarioStarts = Arrays.copyOf(scenarioStarts, savedLocations.length + 1);
+        }
+        savedLocations[scenarioCount++] = savedLocation;
+        scenarioStarts[scenarioCount] = locationCount;
+        pairCount += locationCount - start - 1;
+    }
+
+    /**
+     * Finds the features of a logged character, from the same words the decision algorithm scores a character by
+     * @param line the logged character
+     * @return the index of each of its features, repeated if a feature describes it more than once
+     */
+    private int[] getFeatureIndexes(String line) {
+        LivingBeing character = parseCharacter(line.split(",", 8));
+        int[] descriptionIds = new int[Math.max(RescueBot.DESCRIPTION_IDS, character.getDescriptionIdCount())];
+        int words = character.getDescriptionIds(descriptionIds);
+        int[] featureIndexes = new int[words];
+        int count = 0;
+        for (int k = 0; k < words; k++) {
+            int feature = startingProfile.getFeatureIndex(descriptionIds[k]);
+            if (feature >= 0) {
+                featureIndexes[count++] = feature;
+            }
+        }
+        return Arrays.copyOf(featureIndexes, count);
+    }
+
+    /**
+     * Recreates a logged character
+     * @param lineArray the columns of the logged character
+     * @return the character
+     */
+    private LivingBeing parseCharacter(String[] lineArray) {
+        try {
+            int age = Integer.parseInt(lineArray[2]);
+            if (lineArray[0].equals("human")) {
+                return new Human(lineArray[1], age, lineArray[3], lineArray[4], Boolean.parseBoolean(lineArray[5]));
+            } else if (lineArray[0].equals("animal")) {
+                return new Animal(lineArray[1], age, lineArray[3], lineArray[6], Boolean.parseBoolean(lineArray[7]));
+            }
+        } catch (NumberFormatException | InvalidCharacteristicException | ArrayIndexOutOfBoundsException e) {
+            //Handled below
+        }
+        // This should only ever be reached if the log file is corrupted
+        System.out.print("ERROR: LogFile is corrupted!");
+        System.exit(1);
+        return null;
+    }
+}
@@ -9,6 +9,9 @@ import lib.exceptions.InvalidCharacteristicException;
 public class Animal extends LivingBeing {
 
     private String species;
+    private String[] speciesWords;      //The words of the species
+    private int[] speciesWordIds;       //The id of each word of the species, -1 for a word that isn't numbered (has no weight)
+    private volatile int lookedUpSize = -1;     //The size of the dictionary when the ids were looked up, words without an id are looked up again once it grows
     private boolean isPet;
     private final static String[] GENERATED_SPECIES = {"dog", "cat", "ferret", "chicken", "cow", "wolf", "kangaroo",
                                                 "emu", "snake", "cockatoo", "koala", "possum", "wallaby"};
@@ -20,7 +23,7 @@ public class Animal extends LivingBeing {
      */
     public Animal() {
         super();
-        species = GENERATED_SPECIES[(int) (Math.random() * GENERATED_SPECIES.length)];
+        setSpecies(GENERATED_SPECIES[(int) (Math.random() * GENERATED_SPECIES.length)]);
         if (species.equals("dog") || species.equals("cat") || species.equals("ferret")){
             if (((int) Math.round(Math.random())) == 1) {
                 isPet = true;
@@ -41,14 +44,76 @@ public class Animal extends LivingBeing {
      * @throws InvalidCharacteristicException
      */
     public Animal(String gender, int age, String bodyType, String species, boolean isPet) throws InvalidCharacteristicException {
+        //Every characteristic is validated once, before the others are looked up
+        this(lookUpGender(validate(gender, age, bodyType, species, isPet), gender), age, lookUpBodyType(bodyType), species, isPet);
+    }
+
+    /**
+     * Constructs an animal from characteristics that have already been validated
+     */
+    private Animal(Gender gender, int age, BodyType bodyType, String species, boolean isPet) {
         super(gender, age, bodyType);
+        setSpecies(species);
+        this.isPet = isPet;
+    }
+
+    /**
+     * Creates an animal from characteristics that already passed validate (or were read back from a snapshot of validated animals)
+     * The characteristics are only looked up, not checked again
+     * @param gender
+     * @param age
+     * @param bodyType
+     * @param species
+     * @param isPet
+     * @return the animal
+     * @throws IllegalArgumentException thrown when a characteristic isn't a known value, i.e. it wasn't validated
+     */
+    public static Animal createValidated(String gender, int age, String bodyType, String species, boolean isPet) {
+        return new Animal(lookUpGender(gender), age, lookUpBodyType(bodyType), species, isPet);
+    }
+
+    private void setSpecies(String species) {
         this.species = species.toLowerCase();
+        this.speciesWords = (this.species.indexOf(' ') >= 0) ? this.species.split(" ") : new String[] {this.species};
+        lookUpSpeciesWordIds();
+    }
 
+    /**
+     * Looks up the ids of the words of the species, without numbering the words that don't have one
+     * The ids are replaced as a new array before the size is stored, so characters scored on other threads never see half of them
+     */
+    private void lookUpSpeciesWordIds() {
+        int size = AttributeDictionary.size();
+        if (size == lookedUpSize) {
+            return;
+        }
+        int[] wordIds = new int[speciesWords.length];
+        for (int i = 0; i < speciesWords.length; i++) {
+            wordIds[i] = AttributeDictionary.getId(speciesWords[i]);
+        }
+        speciesWordIds = wordIds;
+        lookedUpSize = size;
+    }
+
+    /**
+     * Checks the characteristics of an animal, without throwing an exception
+     * @param gender
+     * @param age
+     * @param bodyType
+     * @param species
+     * @param isPet
+     * @return VALID, or the column number of the first invalid characteristic
+     */
+    public static int validate(String gender, int age, String bodyType, String species, boolean isPet) {
+        int status = LivingBeing.validate(gender, age, bodyType);
+        if (status != VALID) {
+            return status;
+        }
+        //Only dogs, cats and ferrets can be pets
         if (!(species.equals("dog")||species.equals("cat")||species.equals("ferret")) && isPet) {
-            throw new InvalidCharacteristicException(IS_PET);
-        } else {
-            this.isPet = isPet;
+            return IS_PET;
         }
+        return VALID;
     }
     
     @Override
@@ -65,19 +130,53 @@ public class Animal extends LivingBeing {
     }
 
     public String getIsPet() {
-        if (isPet) {
-            return "pet";
-        } else {
-            return "non-pet";
-        }
+        return AttributeDictionary.getLabel(getIsPetId());
+    }
+
+    public int getIsPetId() {
+        return isPet ? AttributeDictionary.PET : AttributeDictionary.NON_PET;
+    }
+
+    public boolean isPet() {
+        return isPet;
     }
 
     public String[] getArrayRepresentation() {
         String[] arr = {"animal", getSpecies(), getIsPet()};
         return arr;
     }
+
+    @Override
+    public int getAttributeIds(int[] ids) {
+        ids[0] = AttributeDictionary.ANIMAL;
+        ids[1] = getIsPetId();
+        return 2;
+    }
+
+    @Override
+    public int getDescriptionIds(int[] ids) {
+        lookUpSpeciesWordIds();
+        int count = 0;
+        for (int id : speciesWordIds) {
+            if (id >= 0) {
+                ids[count++] = id;
+            }
+        }
+        if (isPet) {
+            ids[count++] = AttributeDictionary.IS;
+            ids[count++] = AttributeDictionary.PET;
+        }
+        return count;
+    }
+
+    @Override
+    public int getDescriptionIdCount() {
+        return speciesWords.length + (isPet ? 2 : 0);
+    }
+
     @Override
     public String getCSVFormat() {
-        return "animal" + "," + getGender() + "," + getAge() + "," + getBodyType() + ",,," + getSpecies() + "," + String.valueOf(isPet);
+        return new StringBuilder(48).append("animal,").append(gender.label).append(',').append(age).append(',').append(bodyType.label)
+                .append(",,,").append(species).append(',').append(isPet).toString();
     }
 }
@@ -0,0 +1,96 @@
+package lib;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives every attribute value of a character (e.g. "female", "doctor", "dog", "trespassing") a small integer id, shared by the whole program
+ * The label of each id is computed once, so characters, statistics and scoring can count and compare ids instead of building strings.
+ * The values of the enum attributes are numbered when the class is loaded, and the characteristics of weight profiles when they are made.
+ * Species are open ended, so they are never numbered here (only a species word that has a weight has an id)
+ * @author Joshia Nambi
+ */
+public class AttributeDictionary {
+
+    private final static ConcurrentHashMap<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static volatile String[] labels = new String[64];      //Replaced (never changed in place) when it grows, so it can be read without locking
+    private static volatile int size = 0;
+
+    //Attributes that aren't the value of an enum
+    public final static int HUMAN = intern("human");
+    public final static int ANIMAL = intern("animal");
+    public final static int PREGNANT = intern("pregnant");
+    public final static int NON_PREGNANT = intern("non-pregnant");
+    public final static int PET = intern("pet");
+    public final static int NON_PET = intern("non-pet");
+    public final static int IS = intern("is");                     //Part of the description of a pet
+    public final static int TRESPASSING = intern("trespassing");
+    public final static int LEGAL = intern("legal");
+
+    /**
+     * @param label an attribute value
+     * @return the id of the attribute value, numbering it if it hasn't been seen
+     */
+    public static int intern(String label) {
+        Integer id = IDS.get(label);
+        if (id != null) {
+            return id;
+        }
+        synchronized (IDS) {
+            id = IDS.get(label);
+            if (id == null) {
+                id = size;
+                if (size == labels.length) {
+                    labels = Arrays.copyOf(labels, size * 2);
+                }
+                labels[size++] = label;
+                IDS.put(label, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * @param label an attribute value
+     * @return the id of the attribute value, or -1 if it hasn't been seen
+     */
+    public static int getId(String label) {
+        Integer id = IDS.get(label);
+        return (id == null) ? -1 : id;
+    }
+
+    /**
+     * @param id the id of an attribute value
+     * @return the attribute value
+     */
+    public static String getLabel(int id) {
+        return labels[id];
+    }
+
+    /**
+     * @return the number of attribute values numbered so far, every id is less than this
+     */
+    public static int size() {
+        return size;
+    }
+
+    /**
+     * @return one more than the largest id getAttributeIds can write for any character, so counts by attribute id never have to grow
+     */
+    public static int getAttributeIdLimit() {
+        int limit = LEGAL + 1;
+        for (LivingBeing.Gender value : LivingBeing.Gender.values()) {
+            limit = Math.max(limit, value.id + 1);
+        }
+        for (LivingBeing.BodyType value : LivingBeing.BodyType.values()) {
+            limit = Math.max(limit, value.id + 1);
+        }
+        for (Human.Profession value : Human.Profession.values()) {
+            limit = Math.max(limit, value.id + 1);
+        }
+        for (Human.AgeCategory value : Human.AgeCategory.values()) {
+            limit = Math.max(limit, value.id + 1);
+        }
+        return limit;
+    }
+}
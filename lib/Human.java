@@ -1,5 +1,7 @@
 package lib;
 
+import java.util.HashMap;
+
 import lib.exceptions.InvalidCharacteristicException;
 
 /**
@@ -8,8 +10,16 @@ import lib.exceptions.InvalidCharacteristicException;
  */
 public class Human extends LivingBeing {
 
-    enum Profession {NONE, STUDENT, DOCTOR, PROFESSOR, CRIMINAL, CEO, HOMELESS, LAWYER, ENGINEER, UNEMPLOYED}
-    enum AgeCategory {BABY, CHILD, ADULT, SENIOR}
+    enum Profession {
+        NONE, STUDENT, DOCTOR, PROFESSOR, CRIMINAL, CEO, HOMELESS, LAWYER, ENGINEER, UNEMPLOYED;
+        final String label = name().toLowerCase();
+        final int id = AttributeDictionary.intern(label);
+    }
+    enum AgeCategory {
+        BABY, CHILD, ADULT, SENIOR;
+        final String label = name().toLowerCase();
+        final int id = AttributeDictionary.intern(label);
+    }
 
     private Profession profession;
     private boolean pregnant;
@@ -18,6 +28,13 @@ public class Human extends LivingBeing {
     final private static int PROFESSION = 4;
     final private static int PREGNANT = 5;
 
+    final private static HashMap<String, Profession> PROFESSIONS = new HashMap<>();
+    static {
+        for (Profession value : Profession.values()) {
+            PROFESSIONS.put(value.name(), value);
+        }
+    }
+
     /**
      * Constructor used to Randomise Instance variables
      */
@@ -89,36 +106,83 @@ public class Human extends LivingBeing {
      * @throws InvalidCharacteristicException
      */
     public Human(String gender, int age, String bodyType, String profession, boolean pregnant) throws InvalidCharacteristicException {
+        //Every characteristic is validated once, before the others are looked up
+        this(lookUpGender(validate(gender, age, bodyType, profession, pregnant), gender), age, lookUpBodyType(bodyType),
+                PROFESSIONS.get(profession.toUpperCase()), pregnant);
+    }
+
+    /**
+     * Constructs a human from characteristics that have already been validated
+     */
+    private Human(Gender gender, int age, BodyType bodyType, Profession profession, boolean pregnant) {
         super(gender, age, bodyType);
-        if (age > 68) {
-            ageCategory = AgeCategory.SENIOR;
-        } else if (age >= 17) {
-            ageCategory = AgeCategory.ADULT;
-        } else if (age >= 5) {
-            ageCategory = AgeCategory.CHILD;
-        } else {
-            ageCategory = AgeCategory.BABY;
-        }
+        this.ageCategory = getAgeCategory(age);
+        this.profession = profession;
+        this.pregnant = pregnant;
+    }
 
-        try {
-            //Only adults can have a profession
-            if (ageCategory != AgeCategory.ADULT && (!profession.toLowerCase().equals("none"))) {
-                throw new InvalidCharacteristicException(PROFESSION);
-            } else {
-                this.profession = Profession.valueOf(profession.toUpperCase());
-            }            
-        } catch (IllegalArgumentException | NullPointerException e) {
-            throw new InvalidCharacteristicException(PROFESSION);
+    /**
+     * Creates a human from characteristics that already passed validate (or were read back from a snapshot of validated humans)
+     * The characteristics are only looked up, not checked again
+     * @param gender
+     * @param age
+     * @param bodyType
+     * @param profession
+     * @param pregnant
+     * @return the human
+     * @throws IllegalArgumentException thrown when a characteristic isn't a known value, i.e. it wasn't validated
+     */
+    public static Human createValidated(String gender, int age, String bodyType, String profession, boolean pregnant) {
+        Profession professionValue = PROFESSIONS.get(profession.toUpperCase());
+        if (professionValue == null) {
+            throw new IllegalArgumentException("Unknown profession: " + profession);
         }
+        return new Human(lookUpGender(gender), age, lookUpBodyType(bodyType), professionValue, pregnant);
+    }
 
+    /**
+     * Checks the characteristics of a human, without throwing an exception
+     * @param gender
+     * @param age
+     * @param bodyType
+     * @param profession
+     * @param pregnant
+     * @return VALID, or the column number of the first invalid characteristic
+     */
+    public static int validate(String gender, int age, String bodyType, String profession, boolean pregnant) {
+        int status = LivingBeing.validate(gender, age, bodyType);
+        if (status != VALID) {
+            return status;
+        }
+        AgeCategory ageCategory = getAgeCategory(age);
+        //Only adults can have a profession
+        if (profession == null || (ageCategory != AgeCategory.ADULT && !profession.toLowerCase().equals("none"))
+                || !PROFESSIONS.containsKey(profession.toUpperCase())) {
+            return PROFESSION;
+        }
         //Only ADULT females can be pregnant
         if (!gender.toLowerCase().equals("female") && pregnant) {
-            throw new InvalidCharacteristicException(PREGNANT);
+            return PREGNANT;
         } else if (ageCategory != AgeCategory.ADULT && pregnant && gender.toLowerCase().equals("female")) {
-            throw new InvalidCharacteristicException(PREGNANT);
+            return PREGNANT;
+        }
+        return VALID;
+    }
+
+    /**
+     * @param age the age of a human
+     * @return the age category of the age
+     */
+    private static AgeCategory getAgeCategory(int age) {
+        if (age > 68) {
+            return AgeCategory.SENIOR;
+        } else if (age >= 17) {
+            return AgeCategory.ADULT;
+        } else if (age >= 5) {
+            return AgeCategory.CHILD;
         } else {
-            this.pregnant = pregnant;
-        }                 
+            return AgeCategory.BABY;
+        }
     }
 
     /**
@@ -126,31 +190,43 @@ public class Human extends LivingBeing {
      */
     @Override
     public String toString() {
-        String str = bodyType.name().toLowerCase() + " " + ageCategory.name().toLowerCase() + " ";
+        StringBuilder str = new StringBuilder(48).append(bodyType.label).append(' ').append(ageCategory.label).append(' ');
         if (profession != Profession.NONE) {
-            str += profession.name().toLowerCase() + " ";
+            str.append(profession.label).append(' ');
         }
-        str += gender.name().toLowerCase();
+        str.append(gender.label);
         if (pregnant) {
-            str += " pregnant";
+            str.append(" pregnant");
         }
-        return str;
+        return str.toString();
     }
 
     public String getProfession() {
-        return profession.name().toLowerCase();
+        return profession.label;
+    }
+
+    public int getProfessionId() {
+        return profession.id;
     }
 
     private String getPregnant() {
-        if (pregnant) {
-            return "pregnant";
-        } else {
-            return "non-pregnant";
-        }
+        return AttributeDictionary.getLabel(getPregnantId());
+    }
+
+    public int getPregnantId() {
+        return pregnant ? AttributeDictionary.PREGNANT : AttributeDictionary.NON_PREGNANT;
+    }
+
+    public boolean isPregnant() {
+        return pregnant;
     }
 
     public String getAgeCategory(){
-        return ageCategory.name().toLowerCase();
+        return ageCategory.label;
+    }
+
+    public int getAgeCategoryId() {
+        return ageCategory.id;
     }
 
     public String[] getArrayRepresentation() {
@@ -158,9 +234,41 @@ public class Human extends LivingBeing {
         return arr;
     }
 
+    @Override
+    public int getAttributeIds(int[] ids) {
+        ids[0] = AttributeDictionary.HUMAN;
+        ids[1] = gender.id;
+        ids[2] = ageCategory.id;
+        ids[3] = bodyType.id;
+        ids[4] = profession.id;
+        ids[5] = getPregnantId();
+        return 6;
+    }
+
+    @Override
+    public int getDescriptionIds(int[] ids) {
+        int count = 0;
+        ids[count++] = bodyType.id;
+        ids[count++] = ageCategory.id;
+        if (profession != Profession.NONE) {
+            ids[count++] = profession.id;
+        }
+        ids[count++] = gender.id;
+        if (pregnant) {
+            ids[count++] = AttributeDictionary.PREGNANT;
+        }
+        return count;
+    }
+
+    @Override
+    public int getDescriptionIdCount() {
+        return 3 + (profession != Profession.NONE ? 1 : 0) + (pregnant ? 1 : 0);
+    }
+
     @Override
     public String getCSVFormat() {
-        return "human," + getGender() + "," + getAge() + "," + getBodyType() + "," + getProfession() + "," + String.valueOf(pregnant) + ",,";
+        return new StringBuilder(48).append("human,").append(gender.label).append(',').append(age).append(',').append(bodyType.label)
+                .append(',').append(profession.label).append(',').append(pregnant).append(",,").toString();
     }
 
 }
@@ -2,6 +2,7 @@ package lib;
 
 import lib.exceptions.InvalidCharacteristicException;
 import java.lang.Math;
+import java.util.HashMap;
 
 /**
  * A class the represents an entity that lives
@@ -9,8 +10,16 @@ import java.lang.Math;
  */
 public abstract class LivingBeing {
     
-    enum Gender {MALE, FEMALE, UNKNOWN};
-    enum BodyType {OVERWEIGHT, ATHLETIC, AVERAGE, UNSPECIFIED};
+    enum Gender {
+        MALE, FEMALE, UNKNOWN;
+        final String label = name().toLowerCase();
+        final int id = AttributeDictionary.intern(label);
+    };
+    enum BodyType {
+        OVERWEIGHT, ATHLETIC, AVERAGE, UNSPECIFIED;
+        final String label = name().toLowerCase();
+        final int id = AttributeDictionary.intern(label);
+    };
 
     protected Gender gender;
     protected int age;
@@ -23,6 +32,24 @@ public abstract class LivingBeing {
     final private static int AGE = 2;  
     final private static int BODY_TYPE = 3;    
 
+    //The most attribute ids any character has
+    final public static int MAX_ATTRIBUTE_IDS = 6;
+
+    //Returned by validation when every characteristic is valid, otherwise the column number of the first invalid characteristic is returned
+    final public static int VALID = -1;
+
+    //Enum values by name, so characteristics can be looked up without valueOf throwing on invalid names
+    final private static HashMap<String, Gender> GENDERS = new HashMap<>();
+    final private static HashMap<String, BodyType> BODY_TYPES = new HashMap<>();
+    static {
+        for (Gender value : Gender.values()) {
+            GENDERS.put(value.name(), value);
+        }
+        for (BodyType value : BodyType.values()) {
+            BODY_TYPES.put(value.name(), value);
+        }
+    }
+
     /**
      * Constructor used to randomise the instance variables
      */
@@ -57,25 +84,88 @@ public abstract class LivingBeing {
      * @throws InvalidCharacteristicException
      */
     public LivingBeing(String gender, int age, String bodyType) throws InvalidCharacteristicException {
-        try {
-            this.gender = Gender.valueOf(gender.toUpperCase());
-        } catch (IllegalArgumentException | NullPointerException e) {
-            throw new InvalidCharacteristicException(GENDER);
+        this(lookUpGender(validate(gender, age, bodyType), gender), age, lookUpBodyType(bodyType));
+    }
+
+    /**
+     * Constructor for characteristics that have already been validated, which are not checked again
+     * @param gender gender of the livingbeing
+     * @param age age of the living being
+     * @param bodyType bodytype of the living being
+     */
+    protected LivingBeing(Gender gender, int age, BodyType bodyType) {
+        this.gender = gender;
+        this.age = age;
+        this.bodyType = bodyType;
+    }
+
+    /**
+     * Checks the characteristics every LivingBeing has, without throwing an exception
+     * @param gender gender of the livingbeing
+     * @param age age of the living being
+     * @param bodyType bodytype of the living being
+     * @return VALID, or the column number of the first invalid characteristic
+     */
+    protected static int validate(String gender, int age, String bodyType) {
+        if (gender == null || !GENDERS.containsKey(gender.toUpperCase())) {
+            return GENDER;
+        } else if (age < 0) {
+            return AGE;
+        } else if (bodyType == null || !BODY_TYPES.containsKey(bodyType.toUpperCase())) {
+            return BODY_TYPE;
         }
-        try {
-            if (age >= 0) {
-                this.age = age;
-            } else {
-                throw new InvalidCharacteristicException(AGE);
-            }
-            this.bodyType = BodyType.valueOf(bodyType.toUpperCase());
-        } catch (IllegalArgumentException | NullPointerException e) {
-            throw new InvalidCharacteristicException(BODY_TYPE);
+        return VALID;
+    }
+
+    /**
+     * Looks up a gender that has already been validated
+     * @param gender the name of the gender
+     * @return the gender
+     * @throws IllegalArgumentException thrown when the name isn't a gender, i.e. it wasn't validated
+     */
+    protected static Gender lookUpGender(String gender) {
+        Gender value = GENDERS.get(gender.toUpperCase());
+        if (value == null) {
+            throw new IllegalArgumentException("Unknown gender: " + gender);
         }
+        return value;
+    }
+
+    /**
+     * Looks up a gender once the characteristics it belongs to have been validated
+     * Constructors validate their characteristics with it before calling the constructor for validated characteristics
+     * @param status the result of validating the characteristics
+     * @param gender the name of the gender
+     * @return the gender
+     * @throws InvalidCharacteristicException thrown when a characteristic is invalid
+     */
+    protected static Gender lookUpGender(int status, String gender) throws InvalidCharacteristicException {
+        if (status != VALID) {
+            throw new InvalidCharacteristicException(status);
+        }
+        return lookUpGender(gender);
+    }
+
+    /**
+     * Looks up a body type that has already been validated
+     * @param bodyType the name of the body type
+     * @return the body type
+     * @throws IllegalArgumentException thrown when the name isn't a body type, i.e. it wasn't validated
+     */
+    protected static BodyType lookUpBodyType(String bodyType) {
+        BodyType value = BODY_TYPES.get(bodyType.toUpperCase());
+        if (value == null) {
+            throw new IllegalArgumentException("Unknown body type: " + bodyType);
+        }
+        return value;
     }
 
     public String getGender() {
-        return gender.name().toLowerCase();
+        return gender.label;
+    }
+
+    public int getGenderId() {
+        return gender.id;
     }
 
     public int getAge() {
@@ -87,7 +177,11 @@ public abstract class LivingBeing {
     }
 
     public String getBodyType() {
-        return bodyType.name().toLowerCase();
+        return bodyType.label;
+    }
+
+    public int getBodyTypeId() {
+        return bodyType.id;
     }
 
     /**
@@ -96,5 +190,25 @@ public abstract class LivingBeing {
      */
     public abstract String[] getArrayRepresentation();
 
+    /**
+     * Writes the ids of the attributes of the character (the array representation without the age or species) without allocating
+     * @param ids where the ids are written, must have room for MAX_ATTRIBUTE_IDS ids
+     * @return the number of ids written
+     */
+    public abstract int getAttributeIds(int[] ids);
+
+    /**
+     * Writes the ids of the words describing the character (the words of toString) without allocating, used to score the character
+     * A word without an id (part of a species that has no weight) is left out
+     * @param ids where the ids are written, must have room for getDescriptionIdCount() ids
+     * @return the number of ids written
+     */
+    public abstract int getDescriptionIds(int[] ids);
+
+    /**
+     * @return the number of words describing the character
+     */
+    public abstract int getDescriptionIdCount();
+
     public abstract String getCSVFormat();
 }
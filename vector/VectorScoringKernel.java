@@ -0,0 +1,32 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Scores as many neighbouring locations per instruction as the processor's vectors hold, using the incubating Vector API
+ * Each lane performs the same multiplications and additions, in the same feature order, as the scalar kernel (never fused),
+ * so the scores are bit-identical. Locations left over at the end of the range are scored by the scalar kernel.
+ * Only compiled and loaded when the jdk.incubator.vector module is added, see the README
+ * @author Joshia Nambi
+ */
+public class VectorScoringKernel implements ScoringKernel {
+
+    private final static VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public void score(double[][] featureCounts, boolean[] trespassing, double[] weights, double tresspassPenality, int from, int to, double[] scores) {
+        int vectorEnd = from + SPECIES.loopBound(to - from);
+        for (int location = from; location < vectorEnd; location += SPECIES.length()) {
+            DoubleVector likelinessToSave = DoubleVector.zero(SPECIES);
+            for (int f = 0; f < featureCounts.length; f++) {
+                likelinessToSave = likelinessToSave.add(DoubleVector.fromArray(SPECIES, featureCounts[f], location).mul(weights[f]));
+            }
+            VectorMask<Double> trespassed = VectorMask.fromArray(SPECIES, trespassing, location);
+            likelinessToSave = likelinessToSave.blend(likelinessToSave.mul(tresspassPenality), trespassed);
+            likelinessToSave.intoArray(scores, location - from);
+        }
+        for (int location = vectorEnd; location < to; location++) {
+            scores[location - from] = ScalarScoringKernel.scoreLocation(featureCounts, trespassing, weights, tresspassPenality, location);
+        }
+    }
+}